@@ -0,0 +1,23 @@
+package org.factorial.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH entry point that always adds the GC profiler, so every run reports allocation rate
+ * ({@code gc.alloc.rate.norm}, bytes per op) next to throughput. Takes the usual JMH options,
+ * e.g. {@code java -jar benchmarks.jar WriterPathBench -p arrival=random}.
+ */
+public final class BenchmarkMain {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,53 @@
+package org.factorial.bench;
+
+import org.factorial.io.DecimalRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/** Decimal output of n!: {@code DecimalRenderer.write} against {@code BigInteger.toString()}. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+public class DecimalRendererBench {
+    private static final OutputStream SINK = OutputStream.nullOutputStream();
+
+    @Param({"100", "1000", "10000", "50000"})
+    public int n;
+
+    private BigInteger factorial;
+
+    @Setup
+    public void setUp() {
+        BigInteger f = BigInteger.ONE;
+        for (int i = 2; i <= n; i++) f = f.multiply(BigInteger.valueOf(i));
+        factorial = f;
+    }
+
+    @Benchmark
+    public void decimalRenderer() throws IOException {
+        DecimalRenderer.write(factorial, SINK);
+    }
+
+    @Benchmark
+    public void bigIntegerToString() throws IOException {
+        SINK.write(factorial.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+}
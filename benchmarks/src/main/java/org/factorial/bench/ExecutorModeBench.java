@@ -0,0 +1,97 @@
+package org.factorial.bench;
+
+import org.factorial.config.AppConfig;
+import org.factorial.pipeline.FactorialPipeline;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Manual benchmark: whole-pipeline throughput and memory for {@code executor.mode=platform|virtual}
+ * at pool sizes 100, 1,000 and 10,000, under both rate modes. {@code rate.mode=worker} is the
+ * comparison that matters for the executor mode: there every pool thread waits on the limiter, while
+ * {@code dispatch} caps the platform pool at the core count anyway. Each combination runs in a fresh
+ * JVM so peak RSS and thread counts are not shared between runs. Needs JDK 21+.
+ * Run with {@code java -cp benchmarks/target/benchmarks.jar org.factorial.bench.ExecutorModeBench [lines]}.
+ */
+public final class ExecutorModeBench {
+
+    public static void main(String[] args) throws Exception {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        if (args.length == 4) {
+            runOne(lines, args[1], Integer.parseInt(args[2]), args[3]);
+            return;
+        }
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        String cp = System.getProperty("java.class.path");
+        System.out.printf("%-8s %-8s %7s %14s %10s %12s %10s%n",
+                "rate", "mode", "pool", "lines/s", "threads", "peak RSS MiB", "heap MiB");
+        for (String rateMode : List.of("worker", "dispatch")) {
+            for (int pool : new int[] {100, 1_000, 10_000}) {
+                for (String mode : List.of("platform", "virtual")) {
+                    Process p = new ProcessBuilder(java, "-cp", cp, ExecutorModeBench.class.getName(),
+                            String.valueOf(lines), mode, String.valueOf(pool), rateMode)
+                            .redirectErrorStream(true).start();
+                    String out = new String(p.getInputStream().readAllBytes());
+                    p.waitFor();
+                    out.lines().filter(l -> l.startsWith("RESULT ")).map(l -> l.substring(7)).forEach(System.out::println);
+                }
+            }
+        }
+    }
+
+    private static void runOne(int lines, String mode, int pool, String rateMode) throws Exception {
+        Path dir = Files.createTempDirectory("executor-bench");
+        Path in = dir.resolve("input.txt");
+        Random rnd = new Random(42);
+        List<String> input = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) input.add(String.valueOf(rnd.nextInt(500)));
+        Files.write(in, input);
+
+        Properties p = new Properties();
+        p.setProperty("input.path", in.toString());
+        p.setProperty("output.path", dir.resolve("out.txt").toString());
+        p.setProperty("errors.path", dir.resolve("err.txt").toString());
+        p.setProperty("rate.per.second", "100000");
+        p.setProperty("progress.interval.ms", "60000");
+        p.setProperty("input.follow.idle.ms", "0");
+        p.setProperty("batch.max.lines", "1");
+        p.setProperty("executor.mode", mode);
+        p.setProperty("rate.mode", rateMode);
+
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(PrintStream.nullOutputStream()));
+        double sec;
+        try {
+            long t0 = System.nanoTime();
+            new FactorialPipeline(pool, AppConfig.fromProperties(p)).run();
+            sec = (System.nanoTime() - t0) / 1e9;
+        } finally {
+            System.setOut(stdout);
+            try (var files = Files.list(dir)) {
+                for (Path f : (Iterable<Path>) files::iterator) Files.delete(f);
+            }
+            Files.delete(dir);
+        }
+
+        var threads = ManagementFactory.getThreadMXBean();
+        long heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        System.out.printf("RESULT %-8s %-8s %7d %,14.0f %10d %12d %10d%n", rateMode, mode, pool, lines / sec,
+                threads.getPeakThreadCount(), peakRssKib() / 1024, heap >> 20);
+    }
+
+    private static long peakRssKib() throws Exception {
+        Path status = Path.of("/proc/self/status");
+        if (!Files.exists(status)) return -1;
+        return Files.readAllLines(status).stream()
+                .filter(l -> l.startsWith("VmHWM:"))
+                .mapToLong(l -> Long.parseLong(l.replaceAll("\\D", "")))
+                .findFirst().orElse(-1);
+    }
+}
@@ -0,0 +1,73 @@
+package org.factorial.bench;
+
+import org.factorial.compute.FactorialService;
+import org.factorial.config.AppConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code FactorialService.factorial} over 1,024 pre-drawn n per distribution: {@code small} (21..500),
+ * and {@code uniform} (0..5,000) or {@code zipf} (1..5,000, s = 1.1) as drawn by {@link InputGenerator}.
+ * {@code cold} disables the cache so every call computes; {@code cached} pre-warms it with all samples.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FactorialServiceBench {
+    private static final int SAMPLES = 1 << 10;
+    private static final int MAX_N = 5_000;
+
+    @Param({"small", "uniform", "zipf"})
+    public String distribution;
+
+    @Param({"cold", "cached"})
+    public String cache;
+
+    private FactorialService service;
+    private int[] ns;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Properties p = new Properties();
+        p.setProperty("factorial.cache.max.bytes", "cold".equals(cache) ? "0" : String.valueOf(256L << 20));
+        service = new FactorialService(AppConfig.fromProperties(p));
+        ns = samples(distribution, new Random(42));
+        if ("cached".equals(cache)) for (int n : ns) service.factorial(n);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.close();
+    }
+
+    @Benchmark
+    public BigInteger factorial() {
+        return service.factorial(ns[next++ & (SAMPLES - 1)]);
+    }
+
+    static int[] samples(String distribution, Random rnd) {
+        if ("small".equals(distribution)) return rnd.ints(SAMPLES, 21, 501).toArray();
+        var generator = new InputGenerator(InputGenerator.Distribution.of(distribution), MAX_N, 0, 0, 0, rnd.nextLong());
+        return generator.lines(SAMPLES).stream().mapToInt(Integer::parseInt).toArray();
+    }
+}
@@ -0,0 +1,65 @@
+package org.factorial.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Synthetic pipeline input. Valid lines draw n from a {@link Distribution} over 0..maxN; a fraction
+ * {@code invalidRatio} of lines is blank, negative or not a number instead. The same settings and
+ * seed always produce the same lines.
+ */
+public record InputGenerator(Distribution distribution, int maxN, double invalidRatio,
+                             double giantRatio, int giantMaxN, long seed) {
+
+    private static final String[] INVALID = {"", "   ", "-7", "abc", "12x", "+-3", "4 5"};
+
+    public enum Distribution {
+        /** Every n in 0..maxN equally likely. */
+        UNIFORM,
+        /** Zipf (s = 1.1) over 1..maxN: n = k with weight 1/k^s, so small n repeat a lot. */
+        ZIPF,
+        /** Uniform over 0..maxN, except a {@code giantRatio} fraction drawn from giantMaxN/2..giantMaxN. */
+        GIANTS;
+
+        public static Distribution of(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    public List<String> lines(int count) {
+        Random rnd = new Random(seed);
+        double[] zipfCdf = distribution == Distribution.ZIPF ? zipfCdf(Math.max(1, maxN), 1.1) : null;
+        List<String> out = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (rnd.nextDouble() < invalidRatio) {
+                out.add(INVALID[rnd.nextInt(INVALID.length)]);
+                continue;
+            }
+            int n = switch (distribution) {
+                case UNIFORM -> rnd.nextInt(maxN + 1);
+                case ZIPF -> zipf(zipfCdf, rnd.nextDouble());
+                case GIANTS -> rnd.nextDouble() < giantRatio
+                        ? giantMaxN / 2 + rnd.nextInt(giantMaxN - giantMaxN / 2 + 1)
+                        : rnd.nextInt(maxN + 1);
+            };
+            out.add(Integer.toString(n));
+        }
+        return out;
+    }
+
+    private static double[] zipfCdf(int n, double s) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int k = 1; k <= n; k++) cdf[k - 1] = sum += 1 / Math.pow(k, s);
+        for (int k = 0; k < n; k++) cdf[k] /= sum;
+        return cdf;
+    }
+
+    private static int zipf(double[] cdf, double u) {
+        int i = Arrays.binarySearch(cdf, u);
+        return Math.min(cdf.length, (i >= 0 ? i : -i - 1) + 1);
+    }
+}
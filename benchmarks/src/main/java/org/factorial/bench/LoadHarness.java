@@ -0,0 +1,275 @@
+package org.factorial.bench;
+
+import org.factorial.config.AppConfig;
+import org.factorial.monitor.LatencyHistogram;
+import org.factorial.pipeline.FactorialPipeline;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Whole-pipeline load test. Generates input with {@link InputGenerator} and runs
+ * {@link FactorialPipeline} once per (distribution, pool, rate) in a fresh JVM, so heap and GC
+ * figures belong to that run alone. Results go to a JSON report: lines/s, p50/p99 read-to-flush
+ * latency, peak heap and GC time. With {@code append=true} the input starts at 10% and the rest is
+ * appended while the pipeline follows the file. Inputs and outputs go to a temp directory that is
+ * removed afterwards, unless {@code dir=} names one to keep them in. Runs offline; only needs {@code java}.
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar org.factorial.bench.LoadHarness \
+ *     lines=200000 dist=uniform,zipf,giants invalid=0.01 pools=8,64 rates=1000,100000 out=load-report.json
+ * </pre>
+ */
+public final class LoadHarness {
+    private static final String CHILD = "--child";
+    /** Passed by the parent to each child only. */
+    private static final Set<String> CHILD_KEYS = Set.of("input", "keep");
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+    static {
+        DEFAULTS.put("lines", "200000");
+        DEFAULTS.put("dist", "uniform,zipf,giants");
+        DEFAULTS.put("maxN", "5000");
+        DEFAULTS.put("invalid", "0.01");
+        DEFAULTS.put("giants", "0.001");
+        DEFAULTS.put("giantMaxN", "100000");
+        DEFAULTS.put("append", "false");
+        DEFAULTS.put("appendChunk", "2000");
+        DEFAULTS.put("appendIntervalMs", "20");
+        DEFAULTS.put("idleMs", "1000");
+        DEFAULTS.put("pools", "8,64");
+        DEFAULTS.put("rates", "1000,100000");
+        DEFAULTS.put("heap", "1g");
+        DEFAULTS.put("seed", "42");
+        DEFAULTS.put("out", "load-report.json");
+        DEFAULTS.put("dir", "");
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals(CHILD)) {
+            runChild(parse(Arrays.copyOfRange(args, 1, args.length)));
+            return;
+        }
+        Map<String, String> opts = parse(args);
+        boolean keep = !opts.get("dir").isEmpty();
+        Path dir = keep ? Path.of(opts.get("dir")) : Files.createTempDirectory("load-harness");
+        Files.createDirectories(dir);
+        try {
+            runAll(opts, dir, keep);
+        } finally {
+            if (!keep) deleteTree(dir);
+        }
+    }
+
+    private static void runAll(Map<String, String> opts, Path dir, boolean keep) throws Exception {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        String cp = System.getProperty("java.class.path");
+
+        List<String> runs = new ArrayList<>();
+        System.out.printf("%-8s %6s %7s %12s %9s %9s %10s %8s%n",
+                "dist", "pool", "rate", "lines/s", "p50 ms", "p99 ms", "heap MiB", "gc ms");
+        for (String dist : opts.get("dist").split(",")) {
+            Path input = dir.resolve("input-" + dist.trim() + ".txt");
+            var generator = new InputGenerator(InputGenerator.Distribution.of(dist), intOpt(opts, "maxN"),
+                    Double.parseDouble(opts.get("invalid")), Double.parseDouble(opts.get("giants")),
+                    intOpt(opts, "giantMaxN"), Long.parseLong(opts.get("seed")));
+            Files.write(input, generator.lines(intOpt(opts, "lines")));
+            for (String pool : opts.get("pools").split(",")) {
+                for (String rate : opts.get("rates").split(",")) {
+                    List<String> cmd = new ArrayList<>(List.of(java, "-Xmx" + opts.get("heap"), "-cp", cp,
+                            LoadHarness.class.getName(), CHILD));
+                    Map<String, String> child = new LinkedHashMap<>(opts);
+                    child.put("dist", dist.trim());
+                    child.put("pools", pool.trim());
+                    child.put("rates", rate.trim());
+                    child.put("input", input.toString());
+                    child.put("dir", dir.toString());
+                    child.put("keep", String.valueOf(keep));
+                    child.forEach((k, v) -> cmd.add(k + "=" + v));
+                    Process p = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+                    String out = new String(p.getInputStream().readAllBytes());
+                    int exit = p.waitFor();
+                    String result = out.lines().filter(l -> l.startsWith("RESULT ")).map(l -> l.substring(7))
+                            .findFirst().orElse(null);
+                    if (exit != 0 || result == null) {
+                        System.err.printf("run dist=%s pool=%s rate=%s failed (exit %d):%n%s%n", dist, pool, rate, exit, out);
+                        continue;
+                    }
+                    runs.add(result);
+                    out.lines().filter(l -> l.startsWith("ROW ")).map(l -> l.substring(4)).forEach(System.out::println);
+                }
+            }
+        }
+        Path report = Path.of(opts.get("out"));
+        Files.writeString(report, report(opts, runs));
+        System.out.println("Report: " + report.toAbsolutePath());
+    }
+
+    private static void runChild(Map<String, String> opts) throws Exception {
+        Path dir = Files.createTempDirectory(Path.of(opts.get("dir")), "run");
+        try {
+            runChild(opts, dir);
+        } finally {
+            if (!Boolean.parseBoolean(opts.get("keep"))) deleteTree(dir);
+        }
+    }
+
+    private static void runChild(Map<String, String> opts, Path dir) throws Exception {
+        Path source = Path.of(opts.get("input"));
+        boolean append = Boolean.parseBoolean(opts.get("append"));
+        int idleMs = append ? intOpt(opts, "idleMs") : 0;
+        Path input = append ? dir.resolve("input.txt") : source;
+        Thread appender = null;
+        if (append) {
+            List<String> all = Files.readAllLines(source);
+            int head = all.size() / 10;
+            Files.write(input, all.subList(0, head));
+            int chunk = intOpt(opts, "appendChunk"), intervalMs = intOpt(opts, "appendIntervalMs");
+            appender = new Thread(() -> appendRest(input, all, head, chunk, intervalMs), "appender");
+        }
+
+        Properties p = new Properties();
+        p.setProperty("input.path", input.toString());
+        p.setProperty("output.path", dir.resolve("out.txt").toString());
+        p.setProperty("errors.path", dir.resolve("err.txt").toString());
+        p.setProperty("rate.per.second", opts.get("rates"));
+        p.setProperty("progress.interval.ms", "3600000");
+        p.setProperty("input.follow.idle.ms", String.valueOf(idleMs));
+        p.setProperty("metrics.jmx", "false");
+        FactorialPipeline pipeline = new FactorialPipeline(intOpt(opts, "pools"), AppConfig.fromProperties(p));
+
+        System.gc();
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP).toList();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+        long gcMs0 = gcTimeMs(), gcCount0 = gcCount();
+
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(PrintStream.nullOutputStream()));
+        long t0 = System.nanoTime();
+        try {
+            if (appender != null) appender.start();
+            pipeline.run();
+        } finally {
+            System.setOut(stdout);
+        }
+        double seconds = Math.max(1e-9, (System.nanoTime() - t0) / 1e9 - idleMs / 1e3);
+        if (appender != null) appender.join();
+
+        long peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        long gcMs = gcTimeMs() - gcMs0, gcCount = gcCount() - gcCount0;
+        long lines = pipeline.metrics().getCounters().getOrDefault("factorial_lines_read_total", 0L);
+        long errors = pipeline.metrics().getCounters().getOrDefault("factorial_lines_errors_total", 0L);
+        LatencyHistogram latency = pipeline.metrics().lineLatency();
+
+        Map<String, Object> r = new LinkedHashMap<>();
+        r.put("distribution", opts.get("dist"));
+        r.put("pool", intOpt(opts, "pools"));
+        r.put("ratePerSecond", intOpt(opts, "rates"));
+        r.put("append", append);
+        r.put("lines", lines);
+        r.put("errors", errors);
+        r.put("seconds", seconds);
+        r.put("linesPerSecond", lines / seconds);
+        r.put("latencyP50Ms", latency.percentileMillis(0.5));
+        r.put("latencyP99Ms", latency.percentileMillis(0.99));
+        r.put("latencyMaxMs", latency.maxNanos() / 1e6);
+        r.put("peakHeapMiB", peakHeap / (1024.0 * 1024.0));
+        r.put("gcTimeMs", gcMs);
+        r.put("gcCount", gcCount);
+        System.out.println("RESULT " + json(r));
+        System.out.printf(Locale.ROOT, "ROW %-8s %6d %7d %,12.0f %9.2f %9.2f %10.1f %8d%n", opts.get("dist"),
+                intOpt(opts, "pools"), intOpt(opts, "rates"), lines / seconds, latency.percentileMillis(0.5),
+                latency.percentileMillis(0.99), peakHeap / (1024.0 * 1024.0), gcMs);
+    }
+
+    /** Appends {@code all[from..]} in chunks, as a producer writing to the followed file would. */
+    private static void appendRest(Path input, List<String> all, int from, int chunk, int intervalMs) {
+        try {
+            for (int i = from; i < all.size(); i += chunk) {
+                Thread.sleep(intervalMs);
+                String text = String.join(System.lineSeparator(), all.subList(i, Math.min(all.size(), i + chunk)))
+                        + System.lineSeparator();
+                Files.writeString(input, text, StandardOpenOption.APPEND);
+            }
+        } catch (IOException e) {
+            System.err.println("Appender failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) Files.deleteIfExists(p);
+        }
+    }
+
+    private static long gcTimeMs() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).filter(t -> t > 0).sum();
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).filter(c -> c > 0).sum();
+    }
+
+    private static String report(Map<String, String> opts, List<String> runs) {
+        Map<String, Object> settings = new LinkedHashMap<>(opts);
+        settings.remove("dir");
+        Map<String, Object> env = new LinkedHashMap<>();
+        env.put("java", System.getProperty("java.version"));
+        env.put("os", System.getProperty("os.name") + " " + System.getProperty("os.version"));
+        env.put("cpus", Runtime.getRuntime().availableProcessors());
+        return "{\n  \"generatedAt\": " + json(Instant.now().toString())
+                + ",\n  \"environment\": " + json(env)
+                + ",\n  \"settings\": " + json(settings)
+                + ",\n  \"runs\": [\n    " + String.join(",\n    ", runs) + "\n  ]\n}\n";
+    }
+
+    private static String json(Object v) {
+        if (v instanceof Map<?, ?> m) {
+            StringBuilder sb = new StringBuilder("{");
+            m.forEach((k, x) -> sb.append(sb.length() > 1 ? ", " : "").append(json(k.toString())).append(": ").append(json(x)));
+            return sb.append('}').toString();
+        }
+        if (v instanceof Double d) return d.isNaN() || d.isInfinite() ? "null" : String.format(Locale.ROOT, "%.3f", d);
+        if (v instanceof Number || v instanceof Boolean) return v.toString();
+        String s = v.toString().replace("\\", "\\\\").replace("\"", "\\\"");
+        return '"' + s + '"';
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> opts = new LinkedHashMap<>(DEFAULTS);
+        for (String a : args) {
+            int eq = a.indexOf('=');
+            if (eq <= 0 || !DEFAULTS.containsKey(a.substring(0, eq)) && !CHILD_KEYS.contains(a.substring(0, eq))) {
+                throw new IllegalArgumentException("Expected key=value with key in " + DEFAULTS.keySet() + ": " + a);
+            }
+            opts.put(a.substring(0, eq), a.substring(eq + 1));
+        }
+        return opts;
+    }
+
+    private static int intOpt(Map<String, String> opts, String key) {
+        return Integer.parseInt(opts.get(key).trim());
+    }
+}
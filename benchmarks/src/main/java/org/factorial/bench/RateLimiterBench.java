@@ -0,0 +1,53 @@
+package org.factorial.bench;
+
+import org.factorial.compute.RateLimiter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of taking a permit when several threads share one limiter. The rate (10^9/s, one permit per
+ * nanosecond) is far above what the threads can take, so this measures the CAS on the shared
+ * timestamp rather than time spent parked. Change the thread count with {@code -t}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+public class RateLimiterBench {
+
+    @Param({"1", "64"})
+    public int burst;
+
+    private RateLimiter limiter;
+
+    @Setup
+    public void setUp() {
+        limiter = new RateLimiter(1_000_000_000, burst, 0);
+    }
+
+    @Benchmark
+    public void acquire() {
+        limiter.acquire();
+    }
+
+    /** What the dispatch-mode reader does per task: book the permit, never wait. */
+    @Benchmark
+    public long reserve() {
+        return limiter.reserve(1);
+    }
+}
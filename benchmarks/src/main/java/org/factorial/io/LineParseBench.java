@@ -0,0 +1,111 @@
+package org.factorial.io;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The reader's line parsing over a 100,000-line file: {@code channel} is {@link LineScanner}
+ * (input.reader=channel), {@code raf} is RandomAccessFile.readLine plus trim/parseInt as ReaderTask
+ * does for input.reader=raf. {@code mixed} makes one line in ten blank, negative or not a number.
+ * Throughput is per line.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LineParseBench {
+    private static final int LINES = 100_000;
+
+    @Param({"valid", "mixed"})
+    public String content;
+
+    private Path file;
+    private FileChannel channel;
+    private LineScanner scanner;
+    private LineScanner.Sink sink;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole bh) throws IOException {
+        Random rnd = new Random(42);
+        List<String> lines = new ArrayList<>(LINES);
+        for (int i = 0; i < LINES; i++) {
+            if ("mixed".equals(content) && i % 10 == 9) {
+                lines.add(switch (rnd.nextInt(3)) {
+                    case 0 -> "   ";
+                    case 1 -> "-" + rnd.nextInt(1_000);
+                    default -> "x" + rnd.nextInt(1_000);
+                });
+            } else {
+                lines.add(String.valueOf(rnd.nextInt(100_000)));
+            }
+        }
+        file = Files.createTempFile("line-parse-bench", ".txt");
+        Files.write(file, lines);
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        scanner = new LineScanner(channel, 0, 0, LineScanner.DEFAULT_BUFFER_BYTES);
+        sink = new LineScanner.Sink() {
+            @Override public void parsed(int index, int value) { bh.consume(value); }
+            @Override public void raw(int index, String line) { bh.consume(parse(line)); }
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        channel.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public int channel() throws IOException, InterruptedException {
+        scanner.rewind(0);
+        return scanner.scan(sink);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void raf(Blackhole bh) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+            String line;
+            while ((line = raf.readLine()) != null) bh.consume(parse(line));
+        }
+    }
+
+    /** ReaderTask.processLine's checks: -1 stands for a line that would be logged as an error. */
+    private static int parse(String line) {
+        String s = line.trim();
+        if (s.isEmpty()) return -1;
+        try {
+            int v = Integer.parseInt(s);
+            return v < 0 ? -1 : v;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
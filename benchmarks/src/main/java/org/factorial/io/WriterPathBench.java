@@ -0,0 +1,90 @@
+package org.factorial.io;
+
+import org.factorial.model.Messages;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WriterTask's reorder, encode and flush path: 16,384 results of 10! arrive {@code in-order},
+ * {@code reversed} or in {@code random} order, or in order with three of every four lines SKIPs
+ * ({@code skip-heavy}), and are written to a temp file. The queue is filled before each run, so only
+ * the writer's own work is timed. Throughput is per line. {@code writer=baseline} runs
+ * {@link BaselineWriterTask} on the same input, for the before/after comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class WriterPathBench {
+    private static final int LINES = 1 << 14;
+
+    @Param({"in-order", "reversed", "random", "skip-heavy"})
+    public String arrival;
+
+    @Param({"current", "baseline"})
+    public String writer;
+
+    private List<Messages.Msg> messages;
+    private ArrayBlockingQueue<Messages.Msg> queue;
+    private Path out;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BigInteger f = BigInteger.valueOf(3_628_800);
+        messages = new ArrayList<>(LINES + 1);
+        for (int i = 0; i < LINES; i++) {
+            boolean skip = arrival.equals("skip-heavy") && i % 4 != 0;
+            messages.add(skip ? Messages.skip(i) : Messages.value(i, 10, f));
+        }
+        switch (arrival) {
+            case "reversed" -> Collections.reverse(messages);
+            case "random" -> Collections.shuffle(messages, new Random(7));
+            default -> { }
+        }
+        messages.add(Messages.poison());
+        queue = new ArrayBlockingQueue<>(LINES + 1);
+        out = Files.createTempFile("writer-path-bench", ".txt");
+    }
+
+    @Setup(Level.Invocation)
+    public void fill() {
+        queue.addAll(messages);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(out);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void writeAll() {
+        Runnable task = writer.equals("baseline") ? new BaselineWriterTask(out, queue) : WriterTask.builder(out, queue).build();
+        task.run();
+    }
+}
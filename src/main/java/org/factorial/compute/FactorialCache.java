@@ -0,0 +1,134 @@
+package org.factorial.compute;
+
+
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Ordered factorial cache bounded by an approximate byte budget, evicting with GDSF
+ * (Greedy-Dual-Size-Frequency): {@code priority = L + frequency * cost / size}, where L is the
+ * priority of the last victim. Reads are lock-free; a hit only bumps the entry's frequency and
+ * age. Priorities in the eviction heap are lazy lower bounds and get refreshed when popped.
+ */
+final class FactorialCache {
+    private static final long ENTRY_OVERHEAD_BYTES = 64;
+
+    private final ConcurrentSkipListMap<Integer, Entry> entries = new ConcurrentSkipListMap<>();
+    private final PriorityQueue<Candidate> heap = new PriorityQueue<>();
+    private final long maxBytes;
+    private final LongAdder evictions = new LongAdder();
+    private long usedBytes;
+    private volatile double inflation;
+
+
+    FactorialCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+
+    BigInteger get(int n) {
+        Entry e = entries.get(n);
+        if (e == null) return null;
+        e.touch(inflation);
+        return e.value;
+    }
+
+
+    /** Presence check that leaves the entry's eviction priority untouched. */
+    boolean contains(int n) {
+        return entries.containsKey(n);
+    }
+
+
+    Map.Entry<Integer, BigInteger> floor(int n) {
+        Map.Entry<Integer, Entry> f = entries.floorEntry(n);
+        if (f == null) return null;
+        f.getValue().touch(inflation);
+        return Map.entry(f.getKey(), f.getValue().value);
+    }
+
+
+    BigInteger putIfAbsent(int n, BigInteger value) {
+        long bytes = weigh(value);
+        if (bytes > maxBytes) return value;
+        synchronized (this) {
+            Entry existing = entries.get(n);
+            if (existing != null) return existing.value;
+            Entry e = new Entry(value, bytes, inflation);
+            entries.put(n, e);
+            heap.add(new Candidate(n, e, e.priority()));
+            usedBytes += bytes;
+            while (usedBytes > maxBytes && evictOne(n)) { }
+            return value;
+        }
+    }
+
+
+    long evictions() { return evictions.sum(); }
+    synchronized long usedBytes() { return usedBytes; }
+    int size() { return entries.size(); }
+
+
+    private boolean evictOne(int keep) {
+        Candidate kept = null;
+        Candidate c;
+        while ((c = heap.poll()) != null) {
+            if (entries.get(c.n) != c.entry) continue;
+            double current = c.entry.priority();
+            if (current > c.priority) {
+                heap.add(new Candidate(c.n, c.entry, current));
+            } else if (c.n == keep) {
+                kept = c;
+            } else {
+                break;
+            }
+        }
+        if (kept != null) heap.add(kept);
+        if (c == null) return false;
+        entries.remove(c.n);
+        usedBytes -= c.entry.bytes;
+        inflation = c.priority;
+        evictions.increment();
+        return true;
+    }
+
+
+    private static long weigh(BigInteger value) {
+        return (value.bitLength() >>> 3) + ENTRY_OVERHEAD_BYTES;
+    }
+
+
+    private static final class Entry {
+        final BigInteger value;
+        final long bytes;
+        final double costPerByte;
+        volatile int frequency = 1;
+        volatile double age;
+
+        Entry(BigInteger value, long bytes, double age) {
+            this.value = value;
+            this.bytes = bytes;
+            // Recomputing grows like size * log(size), so cost / size ~ log2(bits).
+            this.costPerByte = Math.log(value.bitLength() + 2.0) / Math.log(2);
+            this.age = age;
+        }
+
+        void touch(double inflation) {
+            frequency++;
+            age = inflation;
+        }
+
+        double priority() {
+            return age + frequency * costPerByte;
+        }
+    }
+
+
+    private record Candidate(int n, Entry entry, double priority) implements Comparable<Candidate> {
+        @Override public int compareTo(Candidate o) { return Double.compare(priority, o.priority); }
+    }
+}
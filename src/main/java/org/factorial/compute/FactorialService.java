@@ -4,20 +4,50 @@ package org.factorial.compute;
 import org.factorial.config.AppConfig;
 
 
+import java.io.IOException;
 import java.math.BigInteger;
-import java.util.Arrays;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.IntStream;
 
 
-public final class FactorialService {
-    private static final ConcurrentHashMap<Integer, BigInteger> cache = new ConcurrentHashMap<>();
-    private static int smallMax;
-    private static BigInteger[] precomputed = new BigInteger[0];
+public final class FactorialService implements AutoCloseable {
+    private static final double LN_2 = Math.log(2);
+
+    private final FactorialCache cache;
+    private final LongAdder fullHits = new LongAdder();
+    private final LongAdder partialHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder storeHits = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final ConcurrentHashMap<Integer, CompletableFuture<BigInteger>> inFlight = new ConcurrentHashMap<>();
+    private final FactorialStore store;
+    private final int storeMinN;
+    private final int smallMax;
+    private final BigInteger[] precomputed;
+    private final String algorithm;
+    private final int primeThreshold;
+    private final int parallelMinN;
+    private final int parallelGrain;
+    // Owned by this service and shut down in close(); null when fork-join mode is off.
+    private final ForkJoinPool pool;
 
 
     public FactorialService(AppConfig cfg) {
         smallMax = cfg.factorialSmallMax;
+        algorithm = cfg.factorialAlgorithm;
+        primeThreshold = cfg.factorialPrimeThreshold;
+        parallelMinN = cfg.factorialParallelThreads > 0 ? cfg.factorialParallelMinN : Integer.MAX_VALUE;
+        parallelGrain = cfg.factorialParallelGrain;
+        pool = cfg.factorialParallelThreads > 0 ? new ForkJoinPool(cfg.factorialParallelThreads) : null;
+        cache = new FactorialCache(cfg.factorialCacheMaxBytes);
+        store = openStore(cfg.factorialStorePath);
+        storeMinN = cfg.factorialStoreMinN;
 
 
         precomputed = new BigInteger[smallMax + 1];
@@ -26,24 +56,156 @@ public final class FactorialService {
         for (int i = 1; i <= smallMax; i++) {
             precomputed[i] = precomputed[i - 1].multiply(BigInteger.valueOf(i));
         }
-
-
-        cache.put(0, precomputed[0]);
-        if (smallMax >= 1) cache.put(1, precomputed[1]);
     }
 
 
     public BigInteger factorial(int n) {
         if (n < 0) throw new IllegalArgumentException("Negative numbers are not supported");
+        BigInteger known = lookup(n);
+        if (known != null) return known;
+        try {
+            return factorialAsync(n).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            if (e.getCause() instanceof Error err) throw err;
+            throw e;
+        }
+    }
+
+
+    /**
+     * The first caller for an uncached n computes it on its own thread and gets a completed future;
+     * callers arriving while that runs get the same future instead of blocking or recomputing.
+     */
+    public CompletableFuture<BigInteger> factorialAsync(int n) {
+        if (n < 0) return CompletableFuture.failedFuture(new IllegalArgumentException("Negative numbers are not supported"));
+        BigInteger known = lookup(n);
+        if (known != null) return CompletableFuture.completedFuture(known);
+        CompletableFuture<BigInteger> mine = new CompletableFuture<>();
+        CompletableFuture<BigInteger> running = inFlight.putIfAbsent(n, mine);
+        if (running != null) {
+            coalesced.increment();
+            return running;
+        }
+        try {
+            known = lookup(n);
+            mine.complete(known != null ? known : load(n));
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+        } finally {
+            inFlight.remove(n, mine);
+        }
+        return mine;
+    }
+
+
+    private BigInteger lookup(int n) {
         if (n <= smallMax) return precomputed[n];
-        return cache.computeIfAbsent(n, FactorialService::computeFactorial);
+        BigInteger cached = cache.get(n);
+        if (cached != null) fullHits.increment();
+        return cached;
     }
 
 
-    private static BigInteger computeFactorial(int n) {
+    private BigInteger load(int n) {
+        if (store != null && n >= storeMinN) {
+            BigInteger stored = loadStored(n);
+            if (stored != null) return cache.putIfAbsent(n, stored);
+            BigInteger computed = cache.putIfAbsent(n, extendOrCompute(n));
+            store.appendAsync(n, computed);
+            return computed;
+        }
+        return cache.putIfAbsent(n, extendOrCompute(n));
+    }
+
+
+    /**
+     * Rough work estimate for n!, in 64-bit words of the result (log2 n! ~ n log2(n/e)).
+     * Table and cache hits cost 1, so batches of repeated or small values stay large.
+     */
+    public long estimateCost(int n) {
+        if (n <= smallMax || cache.contains(n)) return 1;
+        double bits = n * (Math.log(n) - 1) / LN_2;
+        return Math.max(1, (long) (bits / 64));
+    }
+
+
+    public long cacheFullHits() { return fullHits.sum(); }
+    public long cachePartialHits() { return partialHits.sum(); }
+    public long cacheMisses() { return misses.sum(); }
+    public long cacheEvictions() { return cache.evictions(); }
+    public long cacheBytes() { return cache.usedBytes(); }
+    public long storeHits() { return storeHits.sum(); }
+    public long coalescedRequests() { return coalesced.sum(); }
+
+    boolean parallelPoolShutdown() { return pool == null || pool.isShutdown(); }
+
+
+    @Override public void close() {
+        if (pool != null) pool.shutdown();
+        if (store == null) return;
+        try { store.close(); }
+        catch (IOException e) { System.err.println("Factorial store close failed: " + e.getMessage()); }
+    }
+
+
+    private static FactorialStore openStore(Path path) {
+        if (path == null) return null;
+        try { return FactorialStore.open(path); }
+        catch (IOException e) {
+            System.err.println("Factorial store disabled (" + path + "): " + e.getMessage());
+            return null;
+        }
+    }
+
+
+    private BigInteger loadStored(int n) {
+        try {
+            BigInteger stored = store.get(n);
+            if (stored != null) storeHits.increment();
+            return stored;
+        } catch (IOException e) {
+            System.err.println("Factorial store read failed for " + n + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+
+    /**
+     * n! = k! * (k+1)...n for the largest cached k below n. Extending is skipped when the
+     * prime-swing path would be cheaper, i.e. when the tail is longer than the cached prefix.
+     */
+    private BigInteger extendOrCompute(int n) {
+        Map.Entry<Integer, BigInteger> floor = cache.floor(n);
+        int k = floor == null ? 0 : floor.getKey();
+        if (k > smallMax && (n < primeThreshold || n - k <= k)) {
+            partialHits.increment();
+            return floor.getValue().multiply(rangeProduct(k + 1, n));
+        }
+        misses.increment();
+        return computeFactorial(n);
+    }
+
+
+    private BigInteger rangeProduct(int lo, int hi) {
+        if (hi - lo + 1 >= parallelMinN) return ParallelProduct.product(pool, lo, hi, parallelGrain);
+        return ProductTree.product(lo, hi);
+    }
+
+
+    private BigInteger computeFactorial(int n) {
+        if (n >= parallelMinN) return ParallelProduct.product(pool, 2, n, parallelGrain);
+        if (n >= primeThreshold) return PrimeFactorial.factorial(n);
+        return switch (algorithm) {
+            case "linear" -> linearFactorial(n);
+            default -> ProductTree.product(2, n);
+        };
+    }
+
 
+    static BigInteger linearFactorial(int n) {
         return IntStream.rangeClosed(2, n)
                 .mapToObj(BigInteger::valueOf)
                 .reduce(BigInteger.ONE, BigInteger::multiply);
     }
-}
\ No newline at end of file
+}
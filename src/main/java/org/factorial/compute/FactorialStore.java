@@ -0,0 +1,226 @@
+package org.factorial.compute;
+
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+
+/**
+ * Append-only on-disk factorial store shared by every pipeline process on the host.
+ * Layout: an 8-byte magic, then records {@code [int n][int length][int crc][length bytes of toByteArray()]}
+ * where the CRC32 covers {@code n}, {@code length} and the payload. Appends happen on a background
+ * thread under an exclusive file lock; readers never lock and only trust records that lie completely
+ * below the current file size and pass the checksum. A record torn by a killed writer is cut off by the
+ * next append. Verified records are mapped read-only in segments of about {@code SEGMENT_BYTES}, each
+ * mapped once when the records after it start a new segment; lookups in those read their payload
+ * straight from the mapping, lookups in the still-growing last segment read it from the channel.
+ */
+final class FactorialStore implements Closeable {
+    private static final long MAGIC = 0x4641435453544F32L; // "FACTSTO2"
+    private static final int RECORD_HEADER = 12;
+    private static final long SEGMENT_BYTES = 64L << 20;
+    // File locks are per JVM, not per channel: overlapping lock() calls from one process throw.
+    private static final Object PROCESS_LOCK = new Object();
+
+    private final FileChannel channel;
+    private final long segmentBytes;
+    private final ConcurrentHashMap<Integer, Long> index = new ConcurrentHashMap<>();
+    // Segment start offset -> read-only mapping of the completed segment's records; never replaced.
+    private final ConcurrentSkipListMap<Long, MappedByteBuffer> segments = new ConcurrentSkipListMap<>();
+    private final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+    private final ByteBuffer chunk = ByteBuffer.allocate(64 * 1024);
+    private final Set<Integer> pending = ConcurrentHashMap.newKeySet();
+    private final ExecutorService appender = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "factorial-store");
+        t.setDaemon(true);
+        return t;
+    });
+    private long scanned = Long.BYTES;
+    private long segmentStart = Long.BYTES;
+
+
+    private FactorialStore(FileChannel channel, long segmentBytes) {
+        this.channel = channel;
+        this.segmentBytes = segmentBytes;
+    }
+
+
+    static FactorialStore open(Path path) throws IOException {
+        return open(path, SEGMENT_BYTES);
+    }
+
+
+    static FactorialStore open(Path path, long segmentBytes) throws IOException {
+        Path parent = path.toAbsolutePath().normalize().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            synchronized (PROCESS_LOCK) {
+                FileLock lock = ch.lock();
+                try {
+                    if (ch.size() == 0) ch.write(ByteBuffer.allocate(Long.BYTES).putLong(0, MAGIC), 0);
+                } finally {
+                    lock.release();
+                }
+            }
+            ByteBuffer magic = ByteBuffer.allocate(Long.BYTES);
+            ch.read(magic, 0);
+            if (magic.getLong(0) != MAGIC) throw new IOException("not a factorial store: " + path);
+        } catch (IOException e) {
+            ch.close();
+            throw e;
+        }
+        FactorialStore store = new FactorialStore(ch, segmentBytes);
+        store.refresh();
+        return store;
+    }
+
+
+    BigInteger get(int n) throws IOException {
+        Long offset = index.get(n);
+        if (offset == null) {
+            refresh();
+            offset = index.get(n);
+            if (offset == null) return null;
+        }
+        Map.Entry<Long, MappedByteBuffer> segment = segments.floorEntry(offset);
+        if (segment != null && offset - segment.getKey() < segment.getValue().capacity()) {
+            MappedByteBuffer mapped = segment.getValue();
+            int at = (int) (offset - segment.getKey());
+            byte[] magnitude = new byte[mapped.getInt(at + Integer.BYTES)];
+            mapped.get(at + RECORD_HEADER, magnitude);
+            return new BigInteger(magnitude);
+        }
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        readFully(length, offset + Integer.BYTES);
+        byte[] magnitude = new byte[length.getInt(0)];
+        readFully(ByteBuffer.wrap(magnitude), offset + RECORD_HEADER);
+        return new BigInteger(magnitude);
+    }
+
+
+    void appendAsync(int n, BigInteger value) {
+        if (index.containsKey(n) || !pending.add(n)) return;
+        appender.execute(() -> {
+            try {
+                append(n, value);
+            } catch (IOException e) {
+                System.err.println("Factorial store append failed for " + n + ": " + e.getMessage());
+            } finally {
+                pending.remove(n);
+            }
+        });
+    }
+
+
+    int size() { return index.size(); }
+
+
+    int mappedSegments() { return segments.size(); }
+
+
+    private void append(int n, BigInteger value) throws IOException {
+        byte[] magnitude = value.toByteArray();
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + magnitude.length)
+                .putInt(n).putInt(magnitude.length).putInt(0).put(magnitude).flip();
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, 2 * Integer.BYTES);
+        crc.update(magnitude);
+        record.putInt(2 * Integer.BYTES, (int) crc.getValue());
+        synchronized (PROCESS_LOCK) {
+            FileLock lock = channel.lock();
+            try {
+                refresh();
+                if (index.containsKey(n)) return;
+                // Holding the lock, anything past the last verified record was torn by a killed writer.
+                long offset = scanned;
+                if (channel.size() > offset) channel.truncate(offset);
+                while (record.hasRemaining()) channel.write(record, offset + record.position());
+            } finally {
+                lock.release();
+            }
+        }
+        refresh();
+    }
+
+
+    private synchronized void refresh() throws IOException {
+        long size = channel.size();
+        long start = scanned;
+        List<long[]> found = new ArrayList<>();
+        while (scanned + RECORD_HEADER <= size) {
+            header.clear();
+            if (channel.read(header, scanned) < RECORD_HEADER) break;
+            int n = header.getInt(0);
+            int length = header.getInt(Integer.BYTES);
+            long end = scanned + RECORD_HEADER + length;
+            if (length <= 0 || end > size || !intact(scanned, length, header.getInt(2 * Integer.BYTES))) break;
+            if (end - segmentStart > segmentBytes && scanned > segmentStart) {
+                mapSegment();
+                segmentStart = scanned;
+            }
+            found.add(new long[] {n, scanned});
+            scanned = end;
+        }
+        if (scanned == start) return;
+        for (long[] f : found) index.putIfAbsent((int) f[0], f[1]);
+    }
+
+
+    /** Maps the records from {@code segmentStart} to {@code scanned}, which no later append changes. */
+    private void mapSegment() throws IOException {
+        segments.put(segmentStart, channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, scanned - segmentStart));
+    }
+
+
+    private void readFully(ByteBuffer dst, long position) throws IOException {
+        while (dst.hasRemaining()) {
+            if (channel.read(dst, position + dst.position()) < 0) throw new IOException("factorial store truncated");
+        }
+    }
+
+
+    private boolean intact(long offset, int length, int expected) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(header.array(), 0, 2 * Integer.BYTES);
+        long pos = offset + RECORD_HEADER;
+        long end = pos + length;
+        while (pos < end) {
+            chunk.clear().limit((int) Math.min(chunk.capacity(), end - pos));
+            int read = channel.read(chunk, pos);
+            if (read <= 0) return false;
+            crc.update(chunk.flip());
+            pos += read;
+        }
+        return (int) crc.getValue() == expected;
+    }
+
+
+    @Override public void close() throws IOException {
+        appender.shutdown();
+        try {
+            appender.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+}
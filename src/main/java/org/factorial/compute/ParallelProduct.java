@@ -0,0 +1,50 @@
+package org.factorial.compute;
+
+
+import java.math.BigInteger;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+
+/**
+ * Fork-join version of {@link ProductTree#product(long, long)}: sub-ranges above the grain are
+ * split and computed in parallel. Merges whose operands are both huge use
+ * {@link BigInteger#parallelMultiply}; called from a worker of {@code pool} its subtasks stay in
+ * that pool, so the pool's parallelism caps the cores a single factorial can take.
+ */
+final class ParallelProduct extends RecursiveTask<BigInteger> {
+    private static final long serialVersionUID = 1L;
+    private static final int PARALLEL_MULTIPLY_BITS = 1 << 20;
+
+    private final long lo;
+    private final long hi;
+    private final int grain;
+
+
+    private ParallelProduct(long lo, long hi, int grain) {
+        this.lo = lo;
+        this.hi = hi;
+        this.grain = grain;
+    }
+
+
+    static BigInteger product(ForkJoinPool pool, long lo, long hi, int grain) {
+        return pool.invoke(new ParallelProduct(lo, hi, Math.max(1, grain)));
+    }
+
+
+    @Override protected BigInteger compute() {
+        if (hi - lo < grain) return ProductTree.product(lo, hi);
+        long mid = (lo + hi) >>> 1;
+        ParallelProduct left = new ParallelProduct(lo, mid, grain);
+        left.fork();
+        BigInteger right = new ParallelProduct(mid + 1, hi, grain).compute();
+        return multiply(left.join(), right);
+    }
+
+
+    private static BigInteger multiply(BigInteger a, BigInteger b) {
+        if (Math.min(a.bitLength(), b.bitLength()) >= PARALLEL_MULTIPLY_BITS) return a.parallelMultiply(b);
+        return a.multiply(b);
+    }
+}
@@ -0,0 +1,60 @@
+package org.factorial.compute;
+
+
+import java.math.BigInteger;
+
+
+/**
+ * Luschny's prime-swing factorial: {@code n! = (odd part of n!) << (n - bitCount(n))},
+ * where the odd part is {@code oddPart(n/2)^2 * swing(n)} and {@code swing(n)} is assembled
+ * from prime powers read off the base-p digits of n (the Legendre sum, split per level).
+ * Factors of two never enter a multiplication and the big work is a few squarings.
+ */
+final class PrimeFactorial {
+
+
+    private PrimeFactorial() { }
+
+
+    static BigInteger factorial(int n) {
+        if (n < 2) return BigInteger.ONE;
+        int[] primes = sieve(n);
+        long[] scratch = new long[primes.length];
+        return oddPart(n, primes, scratch).shiftLeft(n - Integer.bitCount(n));
+    }
+
+
+    private static BigInteger oddPart(int n, int[] primes, long[] scratch) {
+        if (n < 2) return BigInteger.ONE;
+        BigInteger half = oddPart(n / 2, primes, scratch);
+        return half.multiply(half).multiply(swing(n, primes, scratch));
+    }
+
+
+    private static BigInteger swing(int n, int[] primes, long[] scratch) {
+        int count = 0;
+        for (int i = 1; i < primes.length && primes[i] <= n; i++) {
+            int p = primes[i];
+            long f = 1;
+            for (int q = n / p; q > 0; q /= p) {
+                if ((q & 1) == 1) f *= p;
+            }
+            if (f > 1) scratch[count++] = f;
+        }
+        return ProductTree.product(scratch, 0, count);
+    }
+
+
+    static int[] sieve(int n) {
+        boolean[] composite = new boolean[n + 1];
+        int count = 0;
+        for (int i = 2; i <= n; i++) {
+            if (composite[i]) continue;
+            count++;
+            for (long j = (long) i * i; j <= n; j += i) composite[(int) j] = true;
+        }
+        int[] primes = new int[count];
+        for (int i = 2, k = 0; i <= n; i++) if (!composite[i]) primes[k++] = i;
+        return primes;
+    }
+}
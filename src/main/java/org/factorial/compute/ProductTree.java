@@ -0,0 +1,64 @@
+package org.factorial.compute;
+
+
+import java.math.BigInteger;
+
+
+/**
+ * Balanced product of consecutive integers. Splitting the range in halves keeps
+ * both operands of every multiplication of similar size, so BigInteger can use
+ * Karatsuba / Toom-Cook instead of the schoolbook path a running product hits.
+ */
+final class ProductTree {
+    private static final int LEAF_SPAN = 32;
+
+
+    private ProductTree() { }
+
+
+    static BigInteger product(long lo, long hi) {
+        if (lo > hi) return BigInteger.ONE;
+        if (hi - lo < LEAF_SPAN) return leaf(lo, hi);
+        long mid = (lo + hi) >>> 1;
+        return product(lo, mid).multiply(product(mid + 1, hi));
+    }
+
+
+    static BigInteger product(long[] xs, int from, int to) {
+        if (from >= to) return BigInteger.ONE;
+        if (to - from <= LEAF_SPAN) return leaf(xs, from, to);
+        int mid = (from + to) >>> 1;
+        return product(xs, from, mid).multiply(product(xs, mid, to));
+    }
+
+
+    private static BigInteger leaf(long[] xs, int from, int to) {
+        BigInteger acc = BigInteger.ONE;
+        long run = 1;
+        for (int i = from; i < to; i++) {
+            long x = xs[i];
+            if (run > Long.MAX_VALUE / x) {
+                acc = acc.multiply(BigInteger.valueOf(run));
+                run = x;
+            } else {
+                run *= x;
+            }
+        }
+        return acc.multiply(BigInteger.valueOf(run));
+    }
+
+
+    private static BigInteger leaf(long lo, long hi) {
+        BigInteger acc = BigInteger.ONE;
+        long run = 1;
+        for (long i = lo; i <= hi; i++) {
+            if (run > Long.MAX_VALUE / i) {
+                acc = acc.multiply(BigInteger.valueOf(run));
+                run = i;
+            } else {
+                run *= i;
+            }
+        }
+        return acc.multiply(BigInteger.valueOf(run));
+    }
+}
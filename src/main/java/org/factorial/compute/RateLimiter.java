@@ -3,30 +3,107 @@ package org.factorial.compute;
 
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.LockSupport;
 
 
+/**
+ * Token bucket kept as a single "next free" timestamp (GCRA): permits accrue at the configured rate
+ * up to {@code burst}, and a request for k permits waits until the bucket has covered all k.
+ * With {@code burst = 1} this is plain fixed spacing. {@code costPerPermit > 0} lets callers
+ * weigh a line by its estimated cost instead of counting every line as one permit.
+ */
 public final class RateLimiter implements AutoCloseable {
-    private final long nanosPerPermit;
+    private final int burst;
+    private final long costPerPermit;
+    private volatile long nanosPerPermit;
+    private volatile long burstNanos;
+    private volatile int rate;
     private final AtomicLong nextFreeNanos;
+    private final LongAdder throttled = new LongAdder();
 
 
     public RateLimiter(int permitsPerSecond) {
-        this.nanosPerPermit = TimeUnit.SECONDS.toNanos(1) / Math.max(1, permitsPerSecond);
-        this.nextFreeNanos = new AtomicLong(System.nanoTime());
+        this(permitsPerSecond, 1, 0);
+    }
+
+
+    public RateLimiter(int permitsPerSecond, int burst, long costPerPermit) {
+        this.burst = Math.max(1, burst);
+        setRate(permitsPerSecond);
+        this.costPerPermit = Math.max(0, costPerPermit);
+        this.nextFreeNanos = new AtomicLong(System.nanoTime() - burstNanos);
+    }
+
+
+    /** Changes the rate for permits booked from now on; permits already booked keep their times. */
+    public void setRate(int permitsPerSecond) {
+        rate = Math.max(1, permitsPerSecond);
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        nanosPerPermit = interval;
+        burstNanos = interval * burst;
+    }
+
+
+    public int rate() {
+        return rate;
+    }
+
+
+    /** Reservations so far whose permits were not available at once, i.e. the rate held them back. */
+    public long throttled() {
+        return throttled.sum();
     }
 
 
     public void acquire() {
+        acquire(1);
+    }
+
+
+    public void acquire(int permits) {
+        long waitNanos = reserve(permits, Long.MAX_VALUE);
+        if (waitNanos > 0) LockSupport.parkNanos(waitNanos);
+    }
+
+
+    /** Takes the permits only if they are available within {@code timeout}; waits for them if so. */
+    public boolean tryAcquire(int permits, long timeout, TimeUnit unit) {
+        long waitNanos = reserve(permits, unit.toNanos(timeout));
+        if (waitNanos < 0) return false;
+        if (waitNanos > 0) LockSupport.parkNanos(waitNanos);
+        return true;
+    }
+
+
+    /** Books the permits without waiting; returns how many nanoseconds from now they become due. */
+    public long reserve(int permits) {
+        return reserve(permits, Long.MAX_VALUE);
+    }
+
+
+    /** Permits a line of the given estimated cost should take: 1 unless cost weighting is on. */
+    public int permitsForCost(long cost) {
+        if (costPerPermit == 0) return 1;
+        long permits = cost / costPerPermit + (cost % costPerPermit == 0 ? 0 : 1);
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(1, permits));
+    }
+
+
+    /** Books the permits and returns how long to wait for them, or -1 (nothing booked) if over {@code maxWaitNanos}. */
+    private long reserve(int permits, long maxWaitNanos) {
+        long cost = nanosPerPermit * Math.max(1, permits);
+        long burstWindow = burstNanos;
         for (;;) {
             long now = System.nanoTime();
             long prev = nextFreeNanos.get();
-            long target = Math.max(prev, now);
-            long next = target + nanosPerPermit;
+            long start = Math.max(prev, now - burstWindow);
+            long next = start + cost;
+            long waitNanos = Math.max(0, next - now);
+            if (waitNanos > maxWaitNanos) return -1;
             if (nextFreeNanos.compareAndSet(prev, next)) {
-                long waitNanos = target - now;
-                if (waitNanos > 0) LockSupport.parkNanos(waitNanos);
-                return;
+                if (waitNanos > 0) throttled.increment();
+                return waitNanos;
             }
         }
     }
@@ -34,4 +111,4 @@ public final class RateLimiter implements AutoCloseable {
 
     @Override public void close() { }
     public void shutdown() { }
-}
\ No newline at end of file
+}
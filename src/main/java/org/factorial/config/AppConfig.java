@@ -8,6 +8,7 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Locale;
 import java.util.Properties;
 
 public final class AppConfig {
@@ -17,12 +18,113 @@ public final class AppConfig {
 
     public final int progressIntervalMs;
     public final int ratePerSecond;
+    public final int rateBurst;
+    public final long rateCostPerPermit;
+    public final String rateMode;
+    public final String resultsChannel;
+    public final int resultsRingCapacity;
+    public final String resultsRingWait;
+    public final boolean rateAdaptive;
+    public final int rateAdaptiveMin;
+    public final int rateAdaptiveMax;
+    public final int rateAdaptiveStep;
+    public final int rateAdaptiveDecreasePercent;
+    public final int rateAdaptiveBacklogHigh;
+    public final int rateAdaptiveLagHigh;
+    public final int rateAdaptiveIntervalMs;
     public final int factorialSmallMax;
+    public final String factorialAlgorithm;
+    public final int factorialPrimeThreshold;
+    public final int factorialParallelThreads;
+    public final int factorialParallelMinN;
+    public final int factorialParallelGrain;
+    public final long factorialCacheMaxBytes;
+    public final Path factorialStorePath;
+    public final int factorialStoreMinN;
+    public final boolean renderInWorkers;
+    public final int outputFlushBytes;
+    public final int outputFlushMs;
+    public final String inputReader;
+    public final String inputFollowMode;
+    public final int inputFollowIdleMs;
+    public final int inputShards;
+    public final long inputShardBytes;
+    public final int batchMaxLines;
+    public final int batchWindowMs;
+    public final long batchMaxCost;
+    public final String executorMode;
+    public final int executorComputeThreads;
+    public final int laneLargeMinN;
+    public final int laneLargeThreads;
+    public final int laneLargeQueue;
+    public final boolean metricsJmx;
+    public final String metricsHttpHost;
+    public final int metricsHttpPort;
+    public final Path inputDir;
+    public final String inputDirGlob;
+    public final int inputDirParallel;
+    public final Path outputDir;
+    public final Path errorsDir;
+    public final Path checkpointPath;
+    public final int checkpointIntervalMs;
+    public final boolean checkpointResume;
 
     private AppConfig(Properties p) {
         ratePerSecond      = parseInt(p, "rate.per.second",      100, 1, 100_000);
+        rateBurst          = parseInt(p, "rate.burst",             1, 1, 1_000_000);
+        rateCostPerPermit  = parseLong(p, "rate.cost.per.permit",  0, 0, Long.MAX_VALUE);
+        rateMode           = parseChoice(p, "rate.mode", "worker", "worker", "dispatch");
+        rateAdaptive       = parseBoolean(p, "rate.adaptive", false);
+        rateAdaptiveMin    = parseInt(p, "rate.adaptive.min", 10, 1, 100_000);
+        rateAdaptiveMax    = Math.max(rateAdaptiveMin, parseInt(p, "rate.adaptive.max", 100_000, 1, 100_000));
+        rateAdaptiveStep   = parseInt(p, "rate.adaptive.step", 50, 1, 100_000);
+        rateAdaptiveDecreasePercent = parseInt(p, "rate.adaptive.decrease.percent", 50, 1, 99);
+        rateAdaptiveBacklogHigh     = parseInt(p, "rate.adaptive.backlog.high", 10_000, 0, Integer.MAX_VALUE);
+        rateAdaptiveLagHigh         = parseInt(p, "rate.adaptive.lag.high", 0, 0, Integer.MAX_VALUE);
+        rateAdaptiveIntervalMs      = parseInt(p, "rate.adaptive.interval.ms", 500, 10, 60_000);
+        resultsChannel      = parseChoice(p, "results.channel", "linked", "linked", "ring");
+        resultsRingCapacity = parseInt(p, "results.ring.capacity", 65_536, 16, 1 << 24);
+        resultsRingWait     = parseChoice(p, "results.ring.wait", "park", "park", "yield", "spin");
         factorialSmallMax  = parseInt(p, "factorial.small.max",    20, 0, 100_000);
         progressIntervalMs = parseInt(p, "progress.interval.ms", 1000, 50, 60_000);
+        factorialAlgorithm = parseChoice(p, "factorial.algorithm", "tree", "tree", "linear");
+        factorialPrimeThreshold = parseInt(p, "factorial.prime.threshold", 100_000, 2, Integer.MAX_VALUE);
+        factorialParallelThreads = parseInt(p, "factorial.parallel.threads", 0, 0, 1_024);
+        factorialParallelMinN    = parseInt(p, "factorial.parallel.min.n", 200_000, 2, Integer.MAX_VALUE);
+        factorialParallelGrain   = parseInt(p, "factorial.parallel.grain", 16_384, 64, Integer.MAX_VALUE);
+        factorialCacheMaxBytes   = parseLong(p, "factorial.cache.max.bytes", 256L << 20, 0, Long.MAX_VALUE);
+        factorialStoreMinN       = parseInt(p, "factorial.store.min.n", 10_000, 0, Integer.MAX_VALUE);
+        renderInWorkers          = parseBoolean(p, "output.render.in.workers", false);
+        outputFlushBytes         = parseInt(p, "output.flush.bytes", 1 << 16, 0, Integer.MAX_VALUE);
+        outputFlushMs            = parseInt(p, "output.flush.ms", 50, 0, 60_000);
+        inputReader              = parseChoice(p, "input.reader", "channel", "channel", "raf");
+        inputFollowMode          = parseChoice(p, "input.follow.mode", "watch", "watch", "poll");
+        inputFollowIdleMs        = parseInt(p, "input.follow.idle.ms", 2_000, 0, Integer.MAX_VALUE);
+        inputShards              = parseInt(p, "input.shards", 1, 0, 256);
+        inputShardBytes          = parseLong(p, "input.shard.bytes", 256L << 10, 4_096, 1L << 30);
+        batchMaxLines            = parseInt(p, "batch.max.lines", 1, 1, 1 << 16);
+        batchWindowMs            = parseInt(p, "batch.window.ms", 5, 0, 60_000);
+        batchMaxCost             = parseLong(p, "batch.max.cost", 1L << 16, 1, Long.MAX_VALUE);
+        executorMode             = parseChoice(p, "executor.mode", "platform", "platform", "virtual");
+        executorComputeThreads   = parseInt(p, "executor.compute.threads", 0, 0, 1_024);
+        laneLargeMinN            = parseInt(p, "lane.large.min.n", 50_000, 0, Integer.MAX_VALUE);
+        laneLargeThreads         = parseInt(p, "lane.large.threads", 0, 0, 1_024);
+        laneLargeQueue           = parseInt(p, "lane.large.queue", 1_024, 0, 1 << 20);
+        metricsJmx               = parseBoolean(p, "metrics.jmx", true);
+        metricsHttpHost          = p.getProperty("metrics.http.host", "127.0.0.1").trim();
+        metricsHttpPort          = parseInt(p, "metrics.http.port", 0, 0, 65_535);
+        String store = p.getProperty("factorial.store.path", "").trim();
+        factorialStorePath = store.isEmpty() ? null : Paths.get(store);
+        String dir = p.getProperty("input.dir", "").trim();
+        inputDir         = dir.isEmpty() ? null : Paths.get(dir);
+        inputDirGlob     = p.getProperty("input.dir.glob", "*").trim();
+        inputDirParallel = parseInt(p, "input.dir.parallel", 4, 1, 1_024);
+        outputDir  = Paths.get(p.getProperty("output.dir", "output").trim());
+        errorsDir  = Paths.get(p.getProperty("errors.dir", "errors").trim());
+        String checkpoint = p.getProperty("checkpoint.path", "").trim();
+        checkpointPath       = checkpoint.isEmpty() ? null : Paths.get(checkpoint);
+        checkpointIntervalMs = parseInt(p, "checkpoint.interval.ms", 10_000, 100, 86_400_000);
+        checkpointResume     = parseBoolean(p, "checkpoint.resume", true);
         inputPath  = Paths.get(p.getProperty("input.path",  "input.txt"));
         outputPath = Paths.get(p.getProperty("output.path", "output.txt"));
         errorsPath = Paths.get(p.getProperty("errors.path", "errors.txt"));
@@ -37,6 +139,34 @@ public final class AppConfig {
         }
     }
 
+    private static long parseLong(Properties p, String key, long def, long min, long max) {
+        try {
+            long v = Long.parseLong(p.getProperty(key, String.valueOf(def)).trim());
+            return (v < min || v > max) ? def : v;
+        } catch (Exception e) {
+            return def;
+        }
+    }
+
+    private static boolean parseBoolean(Properties p, String key, boolean def) {
+        String v = p.getProperty(key, String.valueOf(def)).trim().toLowerCase(Locale.ROOT);
+        return switch (v) {
+            case "true", "yes", "on", "1" -> true;
+            case "false", "no", "off", "0" -> false;
+            default -> def;
+        };
+    }
+
+    private static String parseChoice(Properties p, String key, String def, String... allowed) {
+        String v = p.getProperty(key, def).trim().toLowerCase(Locale.ROOT);
+        for (String a : allowed) if (a.equals(v)) return v;
+        return def;
+    }
+
+    public static AppConfig fromProperties(Properties p) {
+        return new AppConfig(p);
+    }
+
     public static AppConfig loadOrDefault(Path path) {
         Properties p = new Properties();
         if (Files.exists(path)) {
@@ -0,0 +1,218 @@
+package org.factorial.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Resume points for a single-file run. The reader posts a mark (line index and byte offset of that
+ * line in the input) at most every {@code markIntervalMs}. When the writer is about to write that line,
+ * every earlier line has been published, so their errors are logged; it notes its output offset, the
+ * errors-file size and how many earlier lines were errors. Once the output is flushed past that offset
+ * the point becomes stable. {@link #save()} writes the latest stable point on the checkpoint thread,
+ * together with a fingerprint of the input; the writer only compares an index per line.
+ */
+public final class Checkpointer {
+    /** Bytes at the start of the input and just before the resume offset covered by the fingerprint. */
+    private static final int FINGERPRINT_WINDOW = 64 * 1024;
+
+    /** {@code errorsOffset} is -1 when errors are written inline. */
+    public record State(String input, int lineIndex, long inputOffset, long outputOffset, long errorsOffset, int errors) {
+
+        Properties toProperties() {
+            Properties p = new Properties();
+            p.setProperty("input", input);
+            p.setProperty("line.index", String.valueOf(lineIndex));
+            p.setProperty("input.offset", String.valueOf(inputOffset));
+            p.setProperty("output.offset", String.valueOf(outputOffset));
+            p.setProperty("errors.offset", String.valueOf(errorsOffset));
+            p.setProperty("errors", String.valueOf(errors));
+            return p;
+        }
+
+        static State from(Properties p) {
+            return new State(p.getProperty("input", ""),
+                    Integer.parseInt(p.getProperty("line.index").trim()),
+                    Long.parseLong(p.getProperty("input.offset").trim()),
+                    Long.parseLong(p.getProperty("output.offset").trim()),
+                    Long.parseLong(p.getProperty("errors.offset").trim()),
+                    Integer.parseInt(p.getProperty("errors").trim()));
+        }
+    }
+
+    private record Mark(int lineIndex, long inputOffset) { }
+
+    private final Path path;
+    private final Path inputPath;
+    private final String input;
+    private final Path errors;
+    private final long markIntervalNs;
+    private final State resumed;
+    private final ConcurrentLinkedQueue<Mark> marks = new ConcurrentLinkedQueue<>();
+    private long lastMarkNs;
+    private Mark nextMark;
+    private State candidate;
+    private volatile State stable;
+    private State saved;
+
+    /** {@code errors} is the separate errors file, or null when errors are written inline. */
+    public Checkpointer(Path path, Path input, Path errors, int markIntervalMs, State resumed) {
+        this.path = path;
+        this.inputPath = input;
+        this.input = input.toAbsolutePath().normalize().toString();
+        this.errors = errors;
+        this.markIntervalNs = TimeUnit.MILLISECONDS.toNanos(markIntervalMs);
+        this.resumed = resumed;
+        this.lastMarkNs = System.nanoTime();
+        this.saved = resumed;
+    }
+
+    /** The point this run continues from, or null for a run from the start. */
+    public State resumed() { return resumed; }
+
+    /** Latest point whose output has been flushed, or null. */
+    public State stable() { return stable; }
+
+    /**
+     * Reads the checkpoint at {@code path} if it belongs to {@code input}, the input is still the same
+     * file with the same bytes where the fingerprint looks, and the other files are still at least as
+     * long as it recorded; null (after saying why) otherwise.
+     */
+    public static State load(Path path, Path input, Path output, Path errors) {
+        if (!Files.exists(path)) return null;
+        try (InputStream in = Files.newInputStream(path)) {
+            Properties p = new Properties();
+            p.load(in);
+            State s = State.from(p);
+            String reason = null;
+            if (!s.input().equals(input.toAbsolutePath().normalize().toString())) reason = "it is for " + s.input();
+            else if (Files.size(input) < s.inputOffset()) reason = "the input is shorter than the checkpoint";
+            else if (!fileKey(input).equals(p.getProperty("input.key", ""))) reason = "the input was replaced by another file";
+            else if (fingerprint(input, s.inputOffset()) != Long.parseLong(p.getProperty("input.crc", "-1").trim())) {
+                reason = "the input's content changed";
+            }
+            else if (!Files.exists(output) || Files.size(output) < s.outputOffset()) reason = "the output is shorter than the checkpoint";
+            else if (s.errorsOffset() >= 0 && (!Files.exists(errors) || Files.size(errors) < s.errorsOffset())) {
+                reason = "the errors file is shorter than the checkpoint";
+            }
+            if (reason == null) return s;
+            System.err.println("Ignoring checkpoint " + path + ": " + reason + ".");
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable checkpoint " + path + ": " + e);
+        }
+        return null;
+    }
+
+    /** Cuts {@code file} back to {@code length} bytes, dropping whatever was written after the checkpoint. */
+    public static void truncate(Path file, long length) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.truncate(length);
+        }
+    }
+
+    /** Reader thread: true when the next line should be marked. */
+    boolean markDue() {
+        return System.nanoTime() - lastMarkNs >= markIntervalNs;
+    }
+
+    /**
+     * Reader thread: line {@code lineIndex} starts at {@code inputOffset} and has not been handed on yet.
+     * The line the run started from is not worth a checkpoint.
+     */
+    void mark(int lineIndex, long inputOffset) {
+        lastMarkNs = System.nanoTime();
+        if (lineIndex > (resumed == null ? 0 : resumed.lineIndex())) marks.add(new Mark(lineIndex, inputOffset));
+    }
+
+    /**
+     * Writer thread, before writing line {@code index} at {@code outputOffset}; {@code errorsBefore} of
+     * the lines before it were errors.
+     */
+    void beforeWrite(int index, long outputOffset, int errorsBefore) {
+        Mark m = nextMark;
+        if (m == null && (m = marks.poll()) == null) return;
+        while (m != null && m.lineIndex() < index) m = marks.poll();
+        if (m != null && m.lineIndex() == index) {
+            try {
+                long errorsOffset = errors == null ? -1 : Files.size(errors);
+                candidate = new State(input, index, m.inputOffset(), outputOffset, errorsOffset, errorsBefore);
+            } catch (IOException e) {
+                System.err.println("Checkpoint mark skipped: " + e.getMessage());
+            }
+            m = marks.poll();
+        }
+        nextMark = m;
+    }
+
+    /** Writer thread, after a flush: the output now holds {@code flushedOffset} bytes. */
+    void flushed(long flushedOffset) {
+        State c = candidate;
+        if (c != null && c.outputOffset() <= flushedOffset) {
+            stable = c;
+            candidate = null;
+        }
+    }
+
+    /** Writes the stable point to the checkpoint file (temp file, then atomic rename) if it changed. */
+    public synchronized void save() throws IOException {
+        State s = stable;
+        if (s == null || s.equals(saved)) return;
+        Properties p = s.toProperties();
+        p.setProperty("input.key", fileKey(inputPath));
+        p.setProperty("input.crc", String.valueOf(fingerprint(inputPath, s.inputOffset())));
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            p.store(out, "factorial pipeline checkpoint");
+        }
+        try {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        saved = s;
+    }
+
+    /** Removes the checkpoint after a run that finished its input. */
+    public synchronized void delete() throws IOException {
+        Files.deleteIfExists(path);
+        saved = null;
+    }
+
+    /** Identity of the file itself (device and inode on Unix); empty where the platform has none. */
+    private static String fileKey(Path file) throws IOException {
+        Object key = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+        return key == null ? "" : key.toString();
+    }
+
+    /** CRC32 of the input's first bytes and of the bytes just before {@code offset}, each up to the window. */
+    static long fingerprint(Path file, long offset) throws IOException {
+        CRC32 crc = new CRC32();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long head = Math.min(FINGERPRINT_WINDOW, offset);
+            update(crc, ch, 0, head);
+            long tail = Math.max(head, offset - FINGERPRINT_WINDOW);
+            update(crc, ch, tail, offset - tail);
+        }
+        return crc.getValue();
+    }
+
+    private static void update(CRC32 crc, FileChannel ch, long from, long length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate((int) length);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, from + buf.position()) < 0) throw new IOException("input shorter than the checkpoint");
+        }
+        crc.update(buf.flip());
+    }
+}
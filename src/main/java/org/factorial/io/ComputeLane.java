@@ -0,0 +1,102 @@
+package org.factorial.io;
+
+import org.factorial.monitor.LatencyHistogram;
+import org.factorial.monitor.LatencyStats;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Worker executor with its own concurrency limit: the reader takes a slot before submitting and the
+ * task gives it back when done. Queue depth and submit-to-done latency are tracked per lane;
+ * {@code queueWait} (which lanes may share) records how long started tasks sat in the executor queue.
+ */
+public record ComputeLane(String name, ThreadPoolExecutor executor, Semaphore slots, LatencyStats latency,
+                          LatencyHistogram queueWait) {
+
+    public static ComputeLane of(String name, ThreadPoolExecutor executor, Semaphore slots) {
+        return of(name, executor, slots, new LatencyHistogram());
+    }
+
+    public static ComputeLane of(String name, ThreadPoolExecutor executor, Semaphore slots, LatencyHistogram queueWait) {
+        return new ComputeLane(name, executor, slots, new LatencyStats(), queueWait);
+    }
+
+    /** Tasks accepted by the executor that no thread has started yet. */
+    public int queued() { return executor.getQueue().size(); }
+
+    public int active() { return executor.getActiveCount(); }
+
+    /** Runs {@code task} holding one slot; false (slot returned) if the executor rejects it. */
+    boolean submit(Runnable task) throws InterruptedException {
+        return submitAsync(() -> {
+            task.run();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * Like {@link #submit}, but the slot is held until the stage returned by {@code task} completes,
+     * so work the task hands off (or attaches to) still counts against the lane's limit.
+     */
+    boolean submitAsync(Supplier<? extends CompletionStage<?>> task) throws InterruptedException {
+        slots.acquire();
+        return start(task, System.nanoTime());
+    }
+
+    /**
+     * Paced variant: takes the slot now, asks {@code delayNanos} how far off the task's permits are
+     * and lets {@code timer} hand it to the executor when they are due, so no worker waits for them.
+     * {@code onRejected} runs (slot returned) if the executor or the timer refuses the task.
+     */
+    void submitDelayed(Supplier<? extends CompletionStage<?>> task, LongSupplier delayNanos,
+                       ScheduledExecutorService timer, Runnable onRejected) throws InterruptedException {
+        slots.acquire();
+        long submittedNs = System.nanoTime();
+        long delay = delayNanos.getAsLong();
+        if (delay <= 0) {
+            if (!start(task, submittedNs)) onRejected.run();
+            return;
+        }
+        try {
+            timer.schedule(() -> {
+                if (!start(task, submittedNs)) onRejected.run();
+            }, delay, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException rex) {
+            slots.release();
+            onRejected.run();
+        }
+    }
+
+    private boolean start(Supplier<? extends CompletionStage<?>> task, long submittedNs) {
+        Runnable done = () -> {
+            latency.record(System.nanoTime() - submittedNs);
+            slots.release();
+        };
+        long queuedNs = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                queueWait.record(System.nanoTime() - queuedNs);
+                CompletionStage<?> stage;
+                try {
+                    stage = task.get();
+                } catch (RuntimeException | Error e) {
+                    done.run();
+                    throw e;
+                }
+                stage.whenComplete((r, e) -> done.run());
+            });
+            return true;
+        } catch (RejectedExecutionException rex) {
+            slots.release();
+            return false;
+        }
+    }
+}
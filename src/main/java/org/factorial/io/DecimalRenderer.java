@@ -0,0 +1,164 @@
+package org.factorial.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Divide-and-conquer decimal conversion: a value is split by precomputed powers
+ * {@code 10^(LEAF_DIGITS * 2^level)} until the pieces are small enough for {@code toString()}.
+ * Zero-padded blocks up to {@link #CHUNK_DIGITS} are filled into a byte array with both halves
+ * converted in parallel; larger blocks are streamed high half first, so the full decimal string
+ * never exists in memory at once.
+ */
+public final class DecimalRenderer {
+    private static final int LEAF_DIGITS = 512;
+    private static final int PARALLEL_DIGITS = 1 << 15;
+    private static final int CHUNK_DIGITS = 1 << 20;
+    private static final int SMALL_BITS = 1 << 14;
+    private static final double LOG2_10 = Math.log(10) / Math.log(2);
+
+    private static volatile BigInteger[] powers = { BigInteger.TEN.pow(LEAF_DIGITS) };
+
+    private DecimalRenderer() { }
+
+    public static void write(BigInteger v, OutputStream out) throws IOException {
+        if (v.signum() < 0) {
+            out.write('-');
+            v = v.negate();
+        }
+        if (v.bitLength() < SMALL_BITS) {
+            writeAscii(v.toString(), out);
+            return;
+        }
+        writeUnpadded(v, out);
+    }
+
+    public static byte[] toAscii(BigInteger v) {
+        var buf = new ByteArrayOutputStream(Math.max(16, (int) (v.bitLength() * 0.302) + 2));
+        try {
+            write(v, buf);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return buf.toByteArray();
+    }
+
+    private static void writeUnpadded(BigInteger v, OutputStream out) throws IOException {
+        int level = topLevel(v);
+        if (level < 0) {
+            writeAscii(v.toString(), out);
+            return;
+        }
+        BigInteger[] qr = v.divideAndRemainder(power(level));
+        writeUnpadded(qr[0], out);
+        writePadded(qr[1], level, out);
+    }
+
+    private static void writePadded(BigInteger v, int level, OutputStream out) throws IOException {
+        int width = width(level);
+        if (width <= CHUNK_DIGITS) {
+            byte[] dst = new byte[width];
+            fill(v, level, dst, 0);
+            out.write(dst);
+            return;
+        }
+        BigInteger[] qr = v.divideAndRemainder(power(level - 1));
+        writePadded(qr[0], level - 1, out);
+        writePadded(qr[1], level - 1, out);
+    }
+
+    private static void fill(BigInteger v, int level, byte[] dst, int off) {
+        if (width(level) >= PARALLEL_DIGITS) {
+            ForkJoinPool.commonPool().invoke(new Fill(v, level, dst, off));
+        } else {
+            fillSequential(v, level, dst, off);
+        }
+    }
+
+    private static void fillSequential(BigInteger v, int level, byte[] dst, int off) {
+        if (level == 0) {
+            leaf(v, dst, off);
+            return;
+        }
+        BigInteger[] qr = v.divideAndRemainder(power(level - 1));
+        fillSequential(qr[0], level - 1, dst, off);
+        fillSequential(qr[1], level - 1, dst, off + width(level - 1));
+    }
+
+    private static void leaf(BigInteger v, byte[] dst, int off) {
+        String s = v.toString();
+        int pad = LEAF_DIGITS - s.length();
+        for (int i = 0; i < pad; i++) dst[off + i] = '0';
+        for (int i = 0; i < s.length(); i++) dst[off + pad + i] = (byte) s.charAt(i);
+    }
+
+    private static int width(int level) {
+        return LEAF_DIGITS << level;
+    }
+
+    /**
+     * Largest level whose power does not exceed v, or -1 when v is below the leaf power.
+     * Bit-length bounds decide most steps, so no power larger than v is ever materialised.
+     */
+    private static int topLevel(BigInteger v) {
+        int bitLength = v.bitLength();
+        int level = -1;
+        while (true) {
+            double bits = width(level + 1) * LOG2_10;
+            if (bits >= bitLength) return level;
+            if ((long) bits + 1 > bitLength - 1 && v.compareTo(power(level + 1)) < 0) return level;
+            level++;
+        }
+    }
+
+    private static BigInteger power(int level) {
+        BigInteger[] p = powers;
+        if (level < p.length) return p[level];
+        synchronized (DecimalRenderer.class) {
+            p = powers;
+            if (level >= p.length) {
+                BigInteger[] grown = Arrays.copyOf(p, level + 1);
+                for (int i = p.length; i <= level; i++) grown[i] = grown[i - 1].multiply(grown[i - 1]);
+                powers = grown;
+                p = grown;
+            }
+            return p[level];
+        }
+    }
+
+    private static void writeAscii(String s, OutputStream out) throws IOException {
+        byte[] b = new byte[s.length()];
+        for (int i = 0; i < b.length; i++) b[i] = (byte) s.charAt(i);
+        out.write(b);
+    }
+
+    private static final class Fill extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final BigInteger v;
+        private final int level;
+        private final byte[] dst;
+        private final int off;
+
+        Fill(BigInteger v, int level, byte[] dst, int off) {
+            this.v = v;
+            this.level = level;
+            this.dst = dst;
+            this.off = off;
+        }
+
+        @Override protected void compute() {
+            if (width(level) < PARALLEL_DIGITS) {
+                fillSequential(v, level, dst, off);
+                return;
+            }
+            BigInteger[] qr = v.divideAndRemainder(power(level - 1));
+            invokeAll(new Fill(qr[0], level - 1, dst, off),
+                      new Fill(qr[1], level - 1, dst, off + width(level - 1)));
+        }
+    }
+}
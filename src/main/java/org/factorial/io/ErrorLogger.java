@@ -1,16 +1,26 @@
 
 package org.factorial.io;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.concurrent.BlockingQueue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public final class ErrorLogger implements Closeable {
+    /** Entries about one input line: invalid lines, and factorials that failed ({@code ReaderTask}). */
+    private static final Pattern LINE_ENTRY = Pattern.compile("^(?:Line |Factorial for line )(\\d+)[: ]");
+
     private final PrintWriter out;
     private final Object lock = new Object();
     private final BlockingQueue<org.factorial.model.Messages.Msg> outQueue;
@@ -23,11 +33,16 @@ public final class ErrorLogger implements Closeable {
     }
 
     public static ErrorLogger toFile(Path errorsPath) throws IOException {
+        return toFile(errorsPath, false);
+    }
+
+    /** {@code append} keeps what the file holds, for a run resumed from a checkpoint. */
+    public static ErrorLogger toFile(Path errorsPath, boolean append) throws IOException {
         Files.createDirectories(errorsPath.toAbsolutePath().normalize().getParent());
         BufferedWriter bw = Files.newBufferedWriter(
                 errorsPath,
                 StandardOpenOption.CREATE,
-                StandardOpenOption.TRUNCATE_EXISTING,
+                append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING,
                 StandardOpenOption.WRITE
         );
         return new ErrorLogger(new PrintWriter(bw), null, false);
@@ -37,6 +52,39 @@ public final class ErrorLogger implements Closeable {
         return new ErrorLogger(null, outQueue, true);
     }
 
+    /**
+     * Prepares an errors file for a run resumed at line {@code fromIndex}: keeps its first {@code length}
+     * bytes, minus a torn last entry and minus entries for lines from {@code fromIndex} on. The reader
+     * logs those ahead of the writer, and the resumed run reads and logs them again.
+     */
+    public static void resumeAt(Path errorsPath, long length, int fromIndex) throws IOException {
+        Path tmp = errorsPath.resolveSibling(errorsPath.getFileName() + ".resume");
+        try (FileChannel ch = FileChannel.open(errorsPath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ch.truncate(length);
+            ByteBuffer last = ByteBuffer.allocate(1);
+            boolean torn = length > 0 && ch.read(last, length - 1) == 1 && last.get(0) != '\n';
+            try (BufferedReader in = Files.newBufferedReader(errorsPath, StandardCharsets.UTF_8);
+                 BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                String next = in.readLine();
+                while (next != null) {
+                    String entry = next;
+                    next = in.readLine();
+                    if (next == null && torn) break;
+                    Matcher m = LINE_ENTRY.matcher(entry);
+                    if (m.find() && Long.parseLong(m.group(1)) > fromIndex) continue;
+                    out.write(entry);
+                    out.newLine();
+                }
+            }
+        }
+        Files.move(tmp, errorsPath, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** True when error lines go to the output queue, where the writer puts them in line order. */
+    public boolean isInline() {
+        return inlineMode;
+    }
+
     public void log(String msg) {
         System.err.println(msg);
         if (!inlineMode) {
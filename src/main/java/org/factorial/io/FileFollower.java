@@ -0,0 +1,77 @@
+package org.factorial.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Blocks the reader until the followed file may have changed. Watch mode parks on a
+ * {@link WatchService} registered for the file's directory and wakes on the first event;
+ * if the platform cannot watch the directory it degrades to sleeping {@link #POLL_MS}.
+ */
+final class FileFollower implements Closeable {
+    static final int POLL_MS = 200;
+
+    private final Path fileName;
+    private final WatchService watcher;
+
+    private FileFollower(Path fileName, WatchService watcher) {
+        this.fileName = fileName;
+        this.watcher = watcher;
+    }
+
+    static FileFollower polling() {
+        return new FileFollower(null, null);
+    }
+
+    static FileFollower watching(Path file, ErrorLogger logger) {
+        Path abs = file.toAbsolutePath().normalize();
+        WatchService ws = null;
+        try {
+            ws = abs.getFileSystem().newWatchService();
+            abs.getParent().register(ws,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_CREATE);
+            return new FileFollower(abs.getFileName(), ws);
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.log("File watch unavailable, polling instead: " + e.getMessage());
+            if (ws != null) {
+                try { ws.close(); } catch (IOException ignored) { }
+            }
+            return polling();
+        }
+    }
+
+    /** Returns after a change to the file, or after at most {@code timeoutMs}. */
+    void awaitChange(long timeoutMs) throws InterruptedException {
+        if (timeoutMs <= 0) return;
+        if (watcher == null) {
+            Thread.sleep(Math.min(POLL_MS, timeoutMs));
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        try {
+            while (true) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0) return;
+                WatchKey key = watcher.poll(left, TimeUnit.NANOSECONDS);
+                if (key == null) return;
+                boolean ours = key.pollEvents().stream()
+                        .anyMatch(ev -> ev.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(ev.context()));
+                key.reset();
+                if (ours) return;
+            }
+        } catch (ClosedWatchServiceException e) {
+            Thread.sleep(Math.min(POLL_MS, timeoutMs));
+        }
+    }
+
+    @Override public void close() throws IOException {
+        if (watcher != null) watcher.close();
+    }
+}
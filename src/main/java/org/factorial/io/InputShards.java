@@ -0,0 +1,101 @@
+package org.factorial.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cuts the complete lines of an input file into byte ranges that start and end on line boundaries,
+ * with the terminators {@link LineScanner} uses, so scanning the ranges separately yields exactly the
+ * lines (and line count) one scan of the whole file would.
+ */
+final class InputShards {
+    private static final int BLOCK = 8 << 10;
+
+    record Shard(long start, long end) { }
+
+    private InputShards() { }
+
+    /**
+     * Offset right after the last terminated line before {@code size}, or 0 if there is none. A final
+     * {@code \r} does not count, as a {@code \n} appended later would belong to it.
+     */
+    static long completeEnd(FileChannel ch, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(BLOCK);
+        long blockEnd = size;
+        while (blockEnd > 0) {
+            long blockStart = Math.max(0, blockEnd - BLOCK);
+            int n = readFully(ch, buf, blockStart, (int) (blockEnd - blockStart));
+            for (int i = n - 1; i >= 0; i--) {
+                byte b = buf.get(i);
+                if (b == '\n' || (b == '\r' && blockStart + i < size - 1)) return blockStart + i + 1;
+            }
+            blockEnd = blockStart;
+        }
+        return 0;
+    }
+
+    /** Ranges of about {@code shardBytes} covering {@code [0, end)}; {@code end} must be a line boundary. */
+    static List<Shard> split(FileChannel ch, long end, long shardBytes) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(BLOCK);
+        List<Shard> shards = new ArrayList<>();
+        long start = 0;
+        while (start < end) {
+            long next = end - start <= shardBytes ? end : lineStartAtOrAfter(ch, buf, start + shardBytes, end);
+            shards.add(new Shard(start, next));
+            start = next;
+        }
+        return shards;
+    }
+
+    /** Lines in {@code shard}: every {@code \n}, plus every {@code \r} not followed by one. */
+    static int countLines(FileChannel ch, Shard shard, ByteBuffer buf) throws IOException {
+        long lines = 0;
+        boolean cr = false;
+        for (long pos = shard.start(); pos < shard.end(); ) {
+            int n = readFully(ch, buf, pos, (int) Math.min(buf.capacity(), shard.end() - pos));
+            if (n == 0) break;
+            for (int i = 0; i < n; i++) {
+                byte b = buf.get(i);
+                if (cr && b != '\n') lines++;
+                if (b == '\n') lines++;
+                cr = b == '\r';
+            }
+            pos += n;
+        }
+        if (cr) lines++;
+        if (lines > Integer.MAX_VALUE) throw new IOException("Too many lines in one shard: " + lines);
+        return (int) lines;
+    }
+
+    /** First line start at or after {@code pos}, capped at {@code end}. */
+    private static long lineStartAtOrAfter(FileChannel ch, ByteBuffer buf, long pos, long end) throws IOException {
+        long from = pos - 1;
+        while (from < end) {
+            int n = readFully(ch, buf, from, (int) Math.min(BLOCK, end - from + 1));
+            if (n == 0) break;
+            for (int i = 0; i < n; i++) {
+                byte b = buf.get(i);
+                if (b == '\n') return Math.min(end, from + i + 1);
+                if (b == '\r') {
+                    if (i + 1 < n) return Math.min(end, from + i + (buf.get(i + 1) == '\n' ? 2 : 1));
+                    if (i == 0 || from + i + 1 >= end) return Math.min(end, from + i + 1);
+                    from += i;
+                    break;
+                }
+                if (i == n - 1) from += n;
+            }
+        }
+        return end;
+    }
+
+    private static int readFully(FileChannel ch, ByteBuffer buf, long pos, int len) throws IOException {
+        buf.clear().limit(len);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, pos + buf.position()) <= 0) break;
+        }
+        return buf.position();
+    }
+}
@@ -0,0 +1,139 @@
+package org.factorial.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Line reader over a {@link FileChannel} with a large direct buffer, matching
+ * {@link java.io.RandomAccessFile#readLine()} exactly: {@code \n}, {@code \r} and {@code \r\n}
+ * end a line, bytes map to chars as ISO-8859-1, and an unterminated tail is returned at EOF.
+ * Plain non-negative integers are parsed straight from the buffer; only lines that need the
+ * slow path (invalid, negative, signs other than '+') become Strings.
+ */
+final class LineScanner {
+    static final int DEFAULT_BUFFER_BYTES = 1 << 20;
+
+    interface Sink {
+        void parsed(int index, int value) throws InterruptedException;
+        void raw(int index, String line) throws InterruptedException;
+    }
+
+    private final FileChannel channel;
+    private ByteBuffer buf;
+    private byte[] scratch = new byte[256];
+    private long position;
+    private int nextIndex;
+    private long limit = Long.MAX_VALUE;
+
+    LineScanner(FileChannel channel, long position, int nextIndex, int bufferBytes) {
+        this.channel = channel;
+        this.buf = ByteBuffer.allocateDirect(Math.max(64, bufferBytes));
+        this.position = position;
+        this.nextIndex = nextIndex;
+    }
+
+    /** File offset right after the last line handed to the sink. */
+    long position() { return position; }
+    int nextIndex() { return nextIndex; }
+
+    void rewind(long newPosition) { position = newPosition; }
+
+    /** Scans {@code [position, limit)} next, numbering its lines from {@code nextIndex}; {@code limit} should end a line. */
+    void reset(long newPosition, int newNextIndex, long newLimit) {
+        position = newPosition;
+        nextIndex = newNextIndex;
+        limit = newLimit;
+    }
+
+    /** Emits every line from {@link #position()} to the current end of file (or the limit), including an unterminated tail. */
+    int scan(Sink sink) throws IOException, InterruptedException {
+        int lines = 0;
+        long readPos = position;
+        int lineStart = 0;
+        int i = 0;
+        buf.clear();
+        while (true) {
+            if (!buf.hasRemaining()) grow();
+            int n = read(readPos);
+            boolean eof = n <= 0;
+            if (n > 0) readPos += n;
+            int end = buf.position();
+            while (i < end) {
+                byte b = buf.get(i);
+                if (b != '\n' && b != '\r') { i++; continue; }
+                int next = i + 1;
+                if (b == '\r') {
+                    if (next < end) {
+                        if (buf.get(next) == '\n') next++;
+                    } else if (!eof) {
+                        break;
+                    }
+                }
+                emit(sink, lineStart, i);
+                lines++;
+                position += next - lineStart;
+                lineStart = next;
+                i = next;
+            }
+            if (eof) {
+                if (lineStart < end) {
+                    emit(sink, lineStart, end);
+                    lines++;
+                    position += end - lineStart;
+                }
+                return lines;
+            }
+            buf.limit(end).position(lineStart);
+            buf.compact();
+            i -= lineStart;
+            lineStart = 0;
+        }
+    }
+
+    private int read(long readPos) throws IOException {
+        if (readPos >= limit) return -1;
+        if (limit - readPos >= buf.remaining()) return channel.read(buf, readPos);
+        int saved = buf.limit();
+        buf.limit(buf.position() + (int) (limit - readPos));
+        int n = channel.read(buf, readPos);
+        buf.limit(saved);
+        return n;
+    }
+
+    private void emit(Sink sink, int start, int end) throws InterruptedException {
+        int idx = nextIndex++;
+        int value = parseNonNegative(start, end);
+        if (value >= 0) {
+            sink.parsed(idx, value);
+            return;
+        }
+        int len = end - start;
+        if (scratch.length < len) scratch = new byte[Math.max(len, scratch.length * 2)];
+        buf.get(start, scratch, 0, len);
+        sink.raw(idx, new String(scratch, 0, len, StandardCharsets.ISO_8859_1));
+    }
+
+    /** Same result as {@code Integer.parseInt(line.trim())} for plain non-negative input, else -1. */
+    private int parseNonNegative(int start, int end) {
+        while (start < end && (buf.get(start) & 0xFF) <= ' ') start++;
+        while (end > start && (buf.get(end - 1) & 0xFF) <= ' ') end--;
+        if (start < end && buf.get(start) == '+') start++;
+        if (start == end || end - start > 10) return -1;
+        long v = 0;
+        for (int k = start; k < end; k++) {
+            int d = buf.get(k) - '0';
+            if (d < 0 || d > 9) return -1;
+            v = v * 10 + d;
+        }
+        return v > Integer.MAX_VALUE ? -1 : (int) v;
+    }
+
+    private void grow() {
+        ByteBuffer bigger = ByteBuffer.allocateDirect(buf.capacity() * 2);
+        buf.flip();
+        bigger.put(buf);
+        buf = bigger;
+    }
+}
@@ -0,0 +1,199 @@
+package org.factorial.io;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded, preallocated multi-producer/single-consumer ring. Producers claim a sequence with a CAS on
+ * {@code tail} and publish into the slot; the consumer takes published slots in sequence order and
+ * advances {@code head} once per poll or drain, so neither side takes a lock or allocates a node.
+ * All take/poll/drain calls must come from one consumer thread. An empty consumer idles according
+ * to the {@link WaitStrategy}; producers finding the ring full back off by parking briefly.
+ */
+public final class MpscRingBuffer<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    /** How the consumer waits for the next element. */
+    public enum WaitStrategy {
+        /** Parks until a producer unparks it: no CPU while idle, a wake-up per idle period. */
+        PARK,
+        /** Spins briefly, then yields the CPU between checks. */
+        YIELD,
+        /** Busy-spins: lowest latency, burns a core while idle. */
+        SPIN;
+
+        public static WaitStrategy of(String name) {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private static final int SPIN_TRIES = 100;
+    private static final long PRODUCER_PARK_NANOS = 20_000;
+
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final WaitStrategy wait;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    private volatile Thread waitingConsumer;
+
+    public MpscRingBuffer(int capacity, WaitStrategy wait) {
+        int cap = Integer.highestOneBit(Math.max(2, capacity - 1) << 1);
+        this.slots = new AtomicReferenceArray<>(cap);
+        this.mask = cap - 1;
+        this.wait = Objects.requireNonNull(wait);
+    }
+
+    public int capacity() { return mask + 1; }
+
+    @Override public boolean offer(E e) {
+        Objects.requireNonNull(e);
+        long t;
+        do {
+            t = tail.get();
+            if (t - head > mask) return false;
+        } while (!tail.compareAndSet(t, t + 1));
+        slots.set((int) t & mask, e);
+        Thread consumer = waitingConsumer;
+        if (consumer != null) LockSupport.unpark(consumer);
+        return true;
+    }
+
+    @Override public void put(E e) throws InterruptedException {
+        while (!offer(e)) backOff();
+    }
+
+    @Override public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!offer(e)) {
+            if (deadline - System.nanoTime() <= 0) return false;
+            backOff();
+        }
+        return true;
+    }
+
+    @Override public E poll() {
+        long h = head;
+        int i = (int) h & mask;
+        E e = slots.get(i);
+        if (e == null) return null;
+        slots.lazySet(i, null);
+        head = h + 1;
+        return e;
+    }
+
+    @Override public E take() throws InterruptedException {
+        E e;
+        for (int idle = 0; (e = poll()) == null; idle++) idle(idle, Long.MAX_VALUE);
+        return e;
+    }
+
+    @Override public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        E e;
+        for (int idle = 0; (e = poll()) == null; idle++) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) return null;
+            idle(idle, left);
+        }
+        return e;
+    }
+
+    @Override public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /** Moves up to {@code maxElements} published elements, advancing {@code head} once for the run. */
+    @Override public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == this) throw new IllegalArgumentException();
+        long h = head;
+        int n = 0;
+        while (n < maxElements) {
+            int i = (int) (h + n) & mask;
+            E e = slots.get(i);
+            if (e == null) break;
+            slots.lazySet(i, null);
+            c.add(e);
+            n++;
+        }
+        if (n > 0) head = h + n;
+        return n;
+    }
+
+    @Override public E peek() {
+        return slots.get((int) head & mask);
+    }
+
+    /** Claimed sequences not yet consumed, including ones whose producer has not published yet. */
+    @Override public int size() {
+        long h = head;
+        return (int) Math.max(0, Math.min(capacity(), tail.get() - h));
+    }
+
+    @Override public int remainingCapacity() {
+        return capacity() - size();
+    }
+
+    /** Weakly consistent snapshot of published elements from head to tail; does not support remove. */
+    @Override public Iterator<E> iterator() {
+        long from = head;
+        long to = tail.get();
+        return new Iterator<>() {
+            long seq = from;
+            E next = advance();
+
+            private E advance() {
+                while (seq < to) {
+                    E e = slots.get((int) seq++ & mask);
+                    if (e != null) return e;
+                }
+                return null;
+            }
+
+            @Override public boolean hasNext() { return next != null; }
+
+            @Override public E next() {
+                if (next == null) throw new NoSuchElementException();
+                E e = next;
+                next = advance();
+                return e;
+            }
+        };
+    }
+
+    private void idle(int idleCount, long maxNanos) throws InterruptedException {
+        if (Thread.interrupted()) throw new InterruptedException();
+        switch (wait) {
+            case SPIN -> Thread.onSpinWait();
+            case YIELD -> {
+                if (idleCount < SPIN_TRIES) Thread.onSpinWait();
+                else Thread.yield();
+            }
+            case PARK -> {
+                if (idleCount < SPIN_TRIES) {
+                    Thread.onSpinWait();
+                    return;
+                }
+                waitingConsumer = Thread.currentThread();
+                try {
+                    if (peek() == null) LockSupport.parkNanos(this, maxNanos);
+                } finally {
+                    waitingConsumer = null;
+                }
+            }
+        }
+    }
+
+    private static void backOff() throws InterruptedException {
+        if (Thread.interrupted()) throw new InterruptedException();
+        LockSupport.parkNanos(PRODUCER_PARK_NANOS);
+    }
+}
@@ -3,98 +3,576 @@ package org.factorial.io;
 
 import org.factorial.compute.FactorialService;
 import org.factorial.compute.RateLimiter;
+import org.factorial.config.AppConfig;
+import org.factorial.monitor.PipelineMetrics;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 public record ReaderTask(
         Path inputPath,
         BlockingQueue<org.factorial.model.Messages.Msg> resultsQueue,
         ErrorLogger errorLogger,
         RateLimiter limiter,
-        ThreadPoolExecutor workers,
+        ComputeLane lane,
         AtomicInteger linesRead,
         AtomicInteger submitted,
         AtomicInteger completed,
         AtomicInteger errorsCount,
-        Semaphore slots,
         FactorialService factorialService,
-        int followIdleMs
+        int followIdleMs,
+        Options options,
+        ExecutorService compute,
+        ComputeLane largeLane,
+        ScheduledExecutorService pacer,
+        PipelineMetrics metrics,
+        Checkpointer checkpoints
 ) implements Runnable {
 
-    private static final int POLL_MS = 200;
+    /** Lines estimated cheaper than this (64-bit words) are computed on the worker even when {@code compute} is set. */
+    static final long INLINE_COST = 64;
+
+    /**
+     * {@code batchMaxLines > 1} groups consecutive valid lines into one worker task, closed when it
+     * holds that many lines, when its estimated cost reaches {@code batchMaxCost}, when its first line
+     * is {@code batchWindowMs} old, or before the reader waits for input. With a large lane, values
+     * from {@code largeLaneMinN} that are not table or cache hits bypass batching and go there.
+     * {@code readerShards > 1} reads the lines present at start on that many threads (channel reader only).
+     */
+    public record Options(boolean renderInWorkers, boolean channelReader, boolean watchFollow,
+                          int batchMaxLines, int batchWindowMs, long batchMaxCost, int largeLaneMinN,
+                          int readerShards, long shardBytes) {
+        public static final long DEFAULT_SHARD_BYTES = 256L << 10;
+        /** Watched channel reader, one task per line, no large lane, no shards. */
+        public static final Options DEFAULTS =
+                new Options(false, true, true, 1, 0, Long.MAX_VALUE, Integer.MAX_VALUE, 1, DEFAULT_SHARD_BYTES);
+
+        public static Options from(AppConfig cfg) {
+            int shards = cfg.inputShards == 0 ? Runtime.getRuntime().availableProcessors() : cfg.inputShards;
+            return new Options(cfg.renderInWorkers, "channel".equals(cfg.inputReader), "watch".equals(cfg.inputFollowMode),
+                    cfg.batchMaxLines, cfg.batchWindowMs, cfg.batchMaxCost, cfg.laneLargeMinN, shards, cfg.inputShardBytes);
+        }
+    }
+
+    /**
+     * Starts a reader of {@code inputPath} that submits to {@code lane}. Everything else is optional:
+     * fresh counters, no follow wait, {@link Options#DEFAULTS}, no compute pool, large lane, pacer or
+     * checkpoints, and metrics of its own.
+     */
+    public static Builder builder(Path inputPath, BlockingQueue<org.factorial.model.Messages.Msg> resultsQueue,
+                                  ErrorLogger errorLogger, RateLimiter limiter, ComputeLane lane,
+                                  FactorialService factorialService) {
+        return new Builder(inputPath, resultsQueue, errorLogger, limiter, lane, factorialService);
+    }
+
+    public static final class Builder {
+        private final Path inputPath;
+        private final BlockingQueue<org.factorial.model.Messages.Msg> resultsQueue;
+        private final ErrorLogger errorLogger;
+        private final RateLimiter limiter;
+        private final ComputeLane lane;
+        private final FactorialService factorialService;
+        private AtomicInteger linesRead = new AtomicInteger();
+        private AtomicInteger submitted = new AtomicInteger();
+        private AtomicInteger completed = new AtomicInteger();
+        private AtomicInteger errorsCount = new AtomicInteger();
+        private int followIdleMs;
+        private Options options = Options.DEFAULTS;
+        private ExecutorService compute;
+        private ComputeLane largeLane;
+        private ScheduledExecutorService pacer;
+        private PipelineMetrics metrics;
+        private Checkpointer checkpoints;
+
+        private Builder(Path inputPath, BlockingQueue<org.factorial.model.Messages.Msg> resultsQueue, ErrorLogger errorLogger,
+                        RateLimiter limiter, ComputeLane lane, FactorialService factorialService) {
+            this.inputPath = inputPath;
+            this.resultsQueue = resultsQueue;
+            this.errorLogger = errorLogger;
+            this.limiter = limiter;
+            this.lane = lane;
+            this.factorialService = factorialService;
+        }
+
+        /** Counters shared with whoever reports on the run. */
+        public Builder counters(AtomicInteger linesRead, AtomicInteger submitted, AtomicInteger completed,
+                                AtomicInteger errorsCount) {
+            this.linesRead = linesRead;
+            this.submitted = submitted;
+            this.completed = completed;
+            this.errorsCount = errorsCount;
+            return this;
+        }
+
+        public Builder followIdleMs(int followIdleMs) { this.followIdleMs = followIdleMs; return this; }
+        public Builder options(Options options) { this.options = options; return this; }
+        public Builder compute(ExecutorService compute) { this.compute = compute; return this; }
+        public Builder largeLane(ComputeLane largeLane) { this.largeLane = largeLane; return this; }
+        public Builder pacer(ScheduledExecutorService pacer) { this.pacer = pacer; return this; }
+        public Builder metrics(PipelineMetrics metrics) { this.metrics = metrics; return this; }
+        public Builder checkpoints(Checkpointer checkpoints) { this.checkpoints = checkpoints; return this; }
+
+        public ReaderTask build() {
+            return new ReaderTask(inputPath, resultsQueue, errorLogger, limiter, lane, linesRead, submitted, completed,
+                    errorsCount, factorialService, followIdleMs, options, compute, largeLane, pacer,
+                    metrics != null ? metrics : new PipelineMetrics(), checkpoints);
+        }
+    }
 
     @Override public void run() {
-        try { readWithFollow(); }
+        Batch batch = options.batchMaxLines() > 1 ? new Batch(options.batchMaxLines()) : null;
+        try {
+            if (options.channelReader()) readChannelWithFollow(batch);
+            else readWithFollow(batch);
+        }
         catch (InterruptedException ie) { Thread.currentThread().interrupt(); }
         catch (IOException ioe) { errorLogger.log("I/O error in reader: " + ioe.getMessage()); }
+        finally { dispatchPending(batch); }
     }
 
-    private void readWithFollow() throws IOException, InterruptedException {
-        try (var raf = new java.io.RandomAccessFile(inputPath.toFile(), "r")) {
-            long pos = 0, idleMs = 0; int idx = 0;
+    private void readWithFollow(Batch batch) throws IOException, InterruptedException {
+        try (var raf = new java.io.RandomAccessFile(inputPath.toFile(), "r"); FileFollower follower = follower()) {
+            Checkpointer.State resumed = resumed();
+            long pos = resumed == null ? 0 : resumed.inputOffset(), idleSince = System.nanoTime();
+            int idx = resumed == null ? 0 : resumed.lineIndex();
             while (true) {
                 raf.seek(pos);
                 String line; boolean any = false;
                 while ((line = raf.readLine()) != null) {
-                    any = true; processLine(idx++, line); pos = raf.getFilePointer();
+                    any = true; markIfDue(idx, pos); processLine(idx++, line, batch, null); pos = raf.getFilePointer();
                 }
-                if (any) { idleMs = 0; continue; }
-                Thread.sleep(POLL_MS);
+                if (any) { idleSince = System.nanoTime(); continue; }
                 long len = raf.length();
-                if (len > pos) { idleMs = 0; continue; }
-                if (len < pos) { pos = 0; idleMs = 0; continue; }
-                idleMs += POLL_MS; if (idleMs >= Math.max(0, followIdleMs)) break;
+                if (len > pos) continue;
+                if (len < pos) { pos = 0; idleSince = System.nanoTime(); continue; }
+                dispatch(batch);
+                if (!awaitGrowth(follower, idleSince)) break;
+            }
+        }
+    }
+
+    private void readChannelWithFollow(Batch batch) throws IOException, InterruptedException {
+        try (FileChannel ch = FileChannel.open(inputPath, StandardOpenOption.READ); FileFollower follower = follower()) {
+            Checkpointer.State resumed = resumed();
+            LineScanner scanner = resumed != null
+                    ? new LineScanner(ch, resumed.inputOffset(), resumed.lineIndex(), LineScanner.DEFAULT_BUFFER_BYTES)
+                    : options.readerShards() > 1
+                    ? readShards(ch)
+                    : new LineScanner(ch, 0, 0, LineScanner.DEFAULT_BUFFER_BYTES);
+            LineScanner.Sink sink = sink(batch, scanner, null);
+            long idleSince = System.nanoTime();
+            while (true) {
+                if (scanner.scan(sink) > 0) { idleSince = System.nanoTime(); continue; }
+                long len = ch.size();
+                if (len > scanner.position()) continue;
+                if (len < scanner.position()) { scanner.rewind(0); idleSince = System.nanoTime(); continue; }
+                dispatch(batch);
+                if (!awaitGrowth(follower, idleSince)) break;
+            }
+        }
+    }
+
+    /**
+     * With {@code marking} (the single reader's scanner), lines may become checkpoint marks. With
+     * {@code heldErrors}, invalid lines are collected there instead of going to the errors file.
+     */
+    private LineScanner.Sink sink(Batch batch, LineScanner marking, List<HeldError> heldErrors) {
+        return new LineScanner.Sink() {
+            @Override public void parsed(int index, int value) throws InterruptedException {
+                if (marking != null) markIfDue(index, marking.position());
+                linesRead.incrementAndGet();
+                submit(index, value, batch);
+            }
+            @Override public void raw(int index, String line) throws InterruptedException {
+                if (marking != null) markIfDue(index, marking.position());
+                processLine(index, line, batch, heldErrors);
             }
+        };
+    }
+
+    private Checkpointer.State resumed() {
+        return checkpoints == null ? null : checkpoints.resumed();
+    }
+
+    /** Posts a checkpoint mark for line {@code idx}, which starts at {@code offset} and has not been handed on yet. */
+    private void markIfDue(int idx, long offset) {
+        if (checkpoints != null && checkpoints.markDue()) checkpoints.mark(idx, offset);
+    }
+
+    /**
+     * Reads the complete lines present now on {@code readerShards} threads and returns a scanner
+     * after them for the single-reader tail. The lines are cut into line-aligned ranges of about
+     * {@code shardBytes}, counted in parallel, and a prefix sum of the counts gives each range its
+     * first line index. Readers take ranges in file order and stay within {@code readerShards + 1}
+     * ranges of the oldest unfinished one, which bounds what the writer holds back for reordering.
+     * A separate errors file gets a range's invalid lines once every earlier range has been read,
+     * so it stays in line order.
+     */
+    private LineScanner readShards(FileChannel ch) throws IOException, InterruptedException {
+        long end = InputShards.completeEnd(ch, ch.size());
+        List<InputShards.Shard> shards = InputShards.split(ch, end, options.shardBytes());
+        if (shards.size() < 2) return new LineScanner(ch, 0, 0, LineScanner.DEFAULT_BUFFER_BYTES);
+        int threads = Math.min(options.readerShards(), shards.size());
+        AtomicInteger threadId = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads,
+                r -> new Thread(r, "reader-shard-" + threadId.incrementAndGet()));
+        try {
+            int[] lines = new int[shards.size()];
+            List<Callable<Void>> counters = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                final int first = t;
+                counters.add(() -> {
+                    ByteBuffer buf = ByteBuffer.allocate((int) Math.min(LineScanner.DEFAULT_BUFFER_BYTES, options.shardBytes()));
+                    for (int i = first; i < lines.length; i += threads) lines[i] = InputShards.countLines(ch, shards.get(i), buf);
+                    return null;
+                });
+            }
+            awaitAll(pool, counters);
+
+            int[] firstIndex = new int[shards.size() + 1];
+            for (int i = 0; i < lines.length; i++) {
+                long next = (long) firstIndex[i] + lines[i];
+                if (next > Integer.MAX_VALUE) throw new IOException("Input has more than " + Integer.MAX_VALUE + " lines");
+                firstIndex[i + 1] = (int) next;
+            }
+            ShardQueue queue = new ShardQueue(shards.size(), threads + 1);
+            boolean holdErrors = !errorLogger.isInline();
+            List<Callable<Void>> readers = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                readers.add(() -> {
+                    Batch batch = options.batchMaxLines() > 1 ? new Batch(options.batchMaxLines()) : null;
+                    LineScanner scanner = new LineScanner(ch, 0, 0,
+                            (int) Math.min(LineScanner.DEFAULT_BUFFER_BYTES, options.shardBytes()));
+                    try {
+                        for (int i; (i = queue.claim()) >= 0; ) {
+                            List<HeldError> heldErrors = holdErrors ? new ArrayList<>() : null;
+                            InputShards.Shard shard = shards.get(i);
+                            scanner.reset(shard.start(), firstIndex[i], shard.end());
+                            scanner.scan(sink(batch, null, heldErrors));
+                            dispatch(batch);
+                            queue.finish(i, heldErrors);
+                        }
+                    } finally {
+                        dispatchPending(batch);
+                    }
+                    return null;
+                });
+            }
+            awaitAll(pool, readers);
+            return new LineScanner(ch, end, firstIndex[shards.size()], LineScanner.DEFAULT_BUFFER_BYTES);
+        } finally {
+            pool.shutdownNow();
         }
     }
 
-    private void processLine(int idx, String originalLine) throws InterruptedException {
+    /** Runs {@code tasks} and waits for all of them, failing fast with the first failure. */
+    private static void awaitAll(ExecutorService pool, List<Callable<Void>> tasks) throws IOException, InterruptedException {
+        CompletionService<Void> done = new ExecutorCompletionService<>(pool);
+        for (Callable<Void> task : tasks) done.submit(task);
+        for (int i = 0; i < tasks.size(); i++) {
+            try {
+                done.take().get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException io) throw io;
+                if (e.getCause() instanceof InterruptedException ie) throw ie;
+                throw new IOException("Sharded reader failed", e.getCause());
+            }
+        }
+    }
+
+    private FileFollower follower() {
+        return options.watchFollow() ? FileFollower.watching(inputPath, errorLogger) : FileFollower.polling();
+    }
+
+    /** Waits for the file to change; false once it has been idle for {@code followIdleMs}. */
+    private boolean awaitGrowth(FileFollower follower, long idleSinceNs) throws InterruptedException {
+        long idleMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - idleSinceNs);
+        if (idleMs >= Math.max(0, followIdleMs)) return false;
+        follower.awaitChange(followIdleMs - idleMs);
+        return true;
+    }
+
+    private void processLine(int idx, String originalLine, Batch batch, List<HeldError> heldErrors)
+            throws InterruptedException {
         linesRead.incrementAndGet();
         final String s = originalLine.trim();
-        if (s.isEmpty()) { handleInvalidLine(idx, originalLine, "empty/whitespace line"); return; }
+        if (s.isEmpty()) { handleInvalidLine(idx, originalLine, "empty/whitespace line", heldErrors); return; }
         try {
             int v = Integer.parseInt(s);
-            if (v < 0) { handleInvalidLine(idx, originalLine, "negative number not allowed (" + s + ")"); return; }
-            submitFactorialTask(idx, v);
+            if (v < 0) { handleInvalidLine(idx, originalLine, "negative number not allowed (" + s + ")", heldErrors); return; }
+            submit(idx, v, batch);
         } catch (NumberFormatException nfe) {
-            handleInvalidLine(idx, originalLine, "not a valid integer (" + s + ")");
+            handleInvalidLine(idx, originalLine, "not a valid integer (" + s + ")", heldErrors);
         }
     }
 
-    private void handleInvalidLine(int idx, String originalLine, String message) throws InterruptedException {
-        try { errorLogger.logErrorLine(idx, originalLine, message); }
-        catch (IOException ioe) { errorLogger.log("I/O error writing error line: " + ioe.getMessage()); }
+    private void handleInvalidLine(int idx, String originalLine, String message, List<HeldError> heldErrors)
+            throws InterruptedException {
+        if (heldErrors != null) heldErrors.add(new HeldError(idx, originalLine, message));
+        else logErrorLine(idx, originalLine, message);
         errorsCount.incrementAndGet();
         resultsQueue.put(org.factorial.model.Messages.skip(idx));
     }
 
-    private void submitFactorialTask(int idx, int value) throws InterruptedException {
-        slots.acquire();
+    private void logErrorLine(int idx, String originalLine, String message) throws InterruptedException {
+        try { errorLogger.logErrorLine(idx, originalLine, message); }
+        catch (IOException ioe) { errorLogger.log("I/O error writing error line: " + ioe.getMessage()); }
+    }
+
+    private void logHeld(List<HeldError> heldErrors) throws InterruptedException {
+        for (HeldError e : heldErrors) logErrorLine(e.index(), e.line(), e.message());
+    }
+
+    private void submit(int idx, int value, Batch batch) throws InterruptedException {
+        if (largeLane != null && value >= options.largeLaneMinN() && factorialService.estimateCost(value) > 1) {
+            submitFactorialTask(idx, value, largeLane);
+            return;
+        }
+        if (batch == null) { submitFactorialTask(idx, value, lane); return; }
+        long now = System.nanoTime();
+        long cost = factorialService.estimateCost(value);
+        if (batch.size > 0 && batch.cost + cost > options.batchMaxCost()) dispatch(batch);
+        batch.add(idx, value, now, cost);
+        if (batch.size >= options.batchMaxLines() || batch.cost >= options.batchMaxCost()
+                || now - batch.ingestNanos[0] >= TimeUnit.MILLISECONDS.toNanos(options.batchWindowMs())) {
+            dispatch(batch);
+        }
+    }
+
+    /** Hands the pending lines to one worker task, whose results are published in a single queue put. */
+    private void dispatch(Batch batch) throws InterruptedException {
+        if (batch == null || batch.size == 0) return;
+        final int[] indexes = Arrays.copyOf(batch.indexes, batch.size);
+        final int[] values = Arrays.copyOf(batch.values, batch.size);
+        final long[] ingest = Arrays.copyOf(batch.ingestNanos, batch.size);
+        batch.clear();
+        long permits = 0;
+        for (int value : values) permits += permits(value);
+        submitPaced(lane, indexes, ingest, (int) Math.min(Integer.MAX_VALUE, permits), () -> {
+            List<CompletableFuture<org.factorial.model.Messages.Msg>> parts = new ArrayList<>(values.length);
+            for (int i = 0; i < values.length; i++) parts.add(resultAsync(indexes[i], values[i], ingest[i], compute));
+            return CompletableFuture.allOf(parts.toArray(CompletableFuture<?>[]::new)).handle((v, err) -> {
+                List<org.factorial.model.Messages.Msg> results = new ArrayList<>(parts.size());
+                for (int i = 0; i < parts.size(); i++) results.add(outcome(indexes[i], parts.get(i)));
+                publish(org.factorial.model.Messages.batch(results), results.size());
+                return null;
+            });
+        });
+    }
+
+    /**
+     * Hands on what a reader still holds when it stops on an error. Those lines are already counted as
+     * read; left behind they would leave a gap the writer holds every later result back for.
+     */
+    private void dispatchPending(Batch batch) {
+        if (batch == null || batch.size == 0) return;
         try {
-            workers.submit(() -> {
-                try {
-                    limiter.acquire();
-                    var fact = factorialService.factorial(value);
-                    resultsQueue.put(org.factorial.model.Messages.value(idx, value, fact));
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                } finally {
-                    completed.incrementAndGet();
-                    slots.release();
-                }
+            dispatch(batch);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** The large lane computes on its own threads, so giants never occupy the shared compute pool. */
+    private void submitFactorialTask(int idx, int value, ComputeLane target) throws InterruptedException {
+        final long ingestNanos = System.nanoTime();
+        final ExecutorService offload = target == lane ? compute : null;
+        submitPaced(target, new int[] {idx}, new long[] {ingestNanos}, permits(value), () -> {
+            CompletableFuture<org.factorial.model.Messages.Msg> part = resultAsync(idx, value, ingestNanos, offload);
+            return part.handle((m, err) -> {
+                publish(outcome(idx, part), 1);
+                return null;
             });
-            submitted.incrementAndGet();
-        } catch (RejectedExecutionException rex) {
-            resultsQueue.put(org.factorial.model.Messages.skip(idx));
-            errorsCount.incrementAndGet();
-            slots.release();
+        });
+    }
+
+    /**
+     * Without a {@code pacer} the worker itself waits for the permits before running {@code work}.
+     * With one, the permits are booked here and the pacer starts {@code work} when they are due.
+     * If {@code work} throws instead of returning its stage, its lines are published as failed.
+     */
+    private void submitPaced(ComputeLane target, int[] indexes, long[] ingest, int permits,
+                             Supplier<? extends CompletionStage<?>> work) throws InterruptedException {
+        Supplier<CompletionStage<?>> guarded = () -> {
+            try {
+                return work.get();
+            } catch (RuntimeException e) {
+                for (int idx : indexes) publish(failed(idx, e), 1);
+                return CompletableFuture.completedFuture(null);
+            }
+        };
+        if (pacer != null) {
+            submitted.addAndGet(indexes.length);
+            target.submitDelayed(guarded, () -> {
+                long delay = limiter.reserve(permits);
+                metrics.record(PipelineMetrics.Stage.RATE_LIMIT_WAIT, delay);
+                return delay;
+            }, pacer, () -> {
+                errorsCount.addAndGet(indexes.length);
+                for (int idx : indexes) publish(org.factorial.model.Messages.skip(idx), 1);
+            });
+            recordSubmitted(ingest);
+            return;
+        }
+        boolean accepted = target.submitAsync(() -> {
+            long t0 = System.nanoTime();
+            limiter.acquire(permits);
+            metrics.record(PipelineMetrics.Stage.RATE_LIMIT_WAIT, System.nanoTime() - t0);
+            return guarded.get();
+        });
+        if (accepted) {
+            submitted.addAndGet(indexes.length);
+            recordSubmitted(ingest);
+        } else {
+            for (int idx : indexes) resultsQueue.put(org.factorial.model.Messages.skip(idx));
+            errorsCount.addAndGet(indexes.length);
         }
     }
-}
 
+    private void recordSubmitted(long[] ingest) {
+        long now = System.nanoTime();
+        for (long t : ingest) metrics.record(PipelineMetrics.Stage.READ_TO_SUBMIT, now - t);
+    }
+
+    private int permits(int value) {
+        return limiter.permitsForCost(factorialService.estimateCost(value));
+    }
+
+    /**
+     * Completes on whichever thread finishes n!: this one for a fresh value, the first requester's for a
+     * coalesced duplicate, or a {@code compute} thread for offloaded work. Workers never block on it.
+     * Fails, rather than throws, if the work cannot be started (e.g. {@code offload} is shut down).
+     */
+    private CompletableFuture<org.factorial.model.Messages.Msg> resultAsync(int idx, int value, long ingestNanos,
+                                                                             ExecutorService offload) {
+        long startNs = System.nanoTime();
+        CompletableFuture<java.math.BigInteger> fact;
+        try {
+            fact = offload == null || factorialService.estimateCost(value) < INLINE_COST
+                    ? factorialService.factorialAsync(value)
+                    : CompletableFuture.supplyAsync(() -> factorialService.factorialAsync(value), offload)
+                            .thenCompose(f -> f);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return fact.thenApply(f -> {
+            org.factorial.model.Messages.Msg m = options.renderInWorkers()
+                    ? org.factorial.model.Messages.rendered(idx, value, WriterTask.encodeResult(value, f), ingestNanos)
+                    : org.factorial.model.Messages.value(idx, value, f, ingestNanos);
+            metrics.record(PipelineMetrics.Stage.COMPUTE, System.nanoTime() - startNs);
+            return m;
+        });
+    }
+
+    /** The line's result, or a SKIP (logged and counted as an error) if computing it failed. */
+    private org.factorial.model.Messages.Msg outcome(int idx, CompletableFuture<org.factorial.model.Messages.Msg> part) {
+        try {
+            return part.join();
+        } catch (CompletionException e) {
+            return failed(idx, e.getCause());
+        }
+    }
+
+    private org.factorial.model.Messages.Msg failed(int idx, Throwable cause) {
+        errorLogger.log("Factorial for line " + (idx + 1) + " failed: " + cause);
+        errorsCount.incrementAndGet();
+        return org.factorial.model.Messages.skip(idx);
+    }
+
+    private void publish(org.factorial.model.Messages.Msg m, int lines) {
+        try {
+            resultsQueue.put(m);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } finally {
+            completed.addAndGet(lines);
+        }
+    }
+
+    /** An invalid line read by a shard, logged once the shards before it have been logged. */
+    private record HeldError(int index, String line, String message) {}
+
+    /**
+     * Hands out shard numbers in order, at most {@code window} ahead of the oldest unfinished one,
+     * and logs each shard's held errors in shard order.
+     */
+    private final class ShardQueue {
+        private final boolean[] finished;
+        private final List<List<HeldError>> held;
+        private final int window;
+        private int next;
+        private int oldest;
+
+        ShardQueue(int shards, int window) {
+            this.finished = new boolean[shards];
+            this.held = new ArrayList<>(Collections.nCopies(shards, null));
+            this.window = window;
+        }
+
+        /** The next shard to read, or -1 when all are taken. */
+        synchronized int claim() throws InterruptedException {
+            while (next < finished.length && next >= oldest + window) wait();
+            return next < finished.length ? next++ : -1;
+        }
+
+        /** {@code heldErrors} is null when nothing is held back. */
+        synchronized void finish(int shard, List<HeldError> heldErrors) throws InterruptedException {
+            finished[shard] = true;
+            held.set(shard, heldErrors);
+            while (oldest < finished.length && finished[oldest]) {
+                List<HeldError> ready = held.set(oldest++, null);
+                if (ready != null) logHeld(ready);
+            }
+            notifyAll();
+        }
+    }
+
+    /** Lines collected by a reader thread for the next batched task. */
+    private static final class Batch {
+        final int[] indexes;
+        final int[] values;
+        final long[] ingestNanos;
+        int size;
+        long cost;
+
+        Batch(int capacity) {
+            indexes = new int[capacity];
+            values = new int[capacity];
+            ingestNanos = new long[capacity];
+        }
+
+        void add(int idx, int value, long ingest, long lineCost) {
+            indexes[size] = idx;
+            values[size] = value;
+            ingestNanos[size] = ingest;
+            size++;
+            cost += lineCost;
+        }
+
+        void clear() {
+            size = 0;
+            cost = 0;
+        }
+    }
+}
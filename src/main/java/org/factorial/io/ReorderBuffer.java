@@ -0,0 +1,93 @@
+package org.factorial.io;
+
+import org.factorial.model.Messages;
+
+/**
+ * Single-threaded reorder window for the writer: a growable power-of-two ring indexed by
+ * {@code index - nextIndex}. Messages for indexes that were already written are dropped.
+ * Each slot also keeps when its first message arrived, for the reorder-wait metric.
+ */
+final class ReorderBuffer {
+    private Messages.Msg[] slots;
+    private long[] arrivals;
+    private int mask;
+    private int next;
+    private int size;
+    private long lastArrival;
+
+    ReorderBuffer(int initialCapacity, int nextIndex) {
+        int cap = Integer.highestOneBit(Math.max(16, initialCapacity - 1) << 1);
+        this.slots = new Messages.Msg[cap];
+        this.arrivals = new long[cap];
+        this.mask = cap - 1;
+        this.next = nextIndex;
+    }
+
+    void put(Messages.Msg m) {
+        put(m, 0L);
+    }
+
+    void put(Messages.Msg m, long arrivalNanos) {
+        int offset = m.index() - next;
+        if (offset < 0) return;
+        if (offset >= slots.length) grow(offset + 1);
+        int i = m.index() & mask;
+        Messages.Msg existing = slots[i];
+        if (existing == null) {
+            slots[i] = m;
+            arrivals[i] = arrivalNanos;
+            size++;
+        } else {
+            slots[i] = prefer(existing, m);
+        }
+    }
+
+    /** Removes and returns the message at {@link #nextIndex()}, or null if it has not arrived yet. */
+    Messages.Msg pollNext() {
+        int i = next & mask;
+        Messages.Msg m = slots[i];
+        if (m == null) return null;
+        slots[i] = null;
+        lastArrival = arrivals[i];
+        next++;
+        size--;
+        return m;
+    }
+
+    /** Arrival time passed to {@link #put(Messages.Msg, long)} for the message last returned by {@link #pollNext()}. */
+    long lastArrivalNanos() { return lastArrival; }
+
+    int nextIndex() { return next; }
+    int size() { return size; }
+
+    private void grow(int needed) {
+        int cap = Integer.highestOneBit(needed - 1) << 1;
+        Messages.Msg[] grown = new Messages.Msg[cap];
+        long[] grownArrivals = new long[cap];
+        int newMask = cap - 1;
+        for (int k = 0; k < slots.length; k++) {
+            int from = (next + k) & mask;
+            Messages.Msg m = slots[from];
+            if (m == null) continue;
+            grown[m.index() & newMask] = m;
+            grownArrivals[m.index() & newMask] = arrivals[from];
+        }
+        slots = grown;
+        arrivals = grownArrivals;
+        mask = newMask;
+    }
+
+    static Messages.Msg prefer(Messages.Msg a, Messages.Msg b) {
+        return priority(b.type()) > priority(a.type()) ? b : a;
+    }
+
+    private static int priority(Messages.Type t) {
+        return switch (t) {
+            case RESULT -> 4;
+            case RAW_ERROR -> 3;
+            case ERROR_MSG -> 2;
+            case SKIP -> 1;
+            case BATCH, POISON -> 0;
+        };
+    }
+}
@@ -1,73 +1,222 @@
 package org.factorial.io;
 
-import java.io.BufferedWriter;
+import org.factorial.config.AppConfig;
+import org.factorial.monitor.LatencyHistogram;
+import org.factorial.monitor.PipelineMetrics;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ConcurrentSkipListMap;
-
-public record WriterTask(Path outputPath, BlockingQueue<org.factorial.model.Messages.Msg> resultsQueue) implements Runnable {
-
-    private static int flushContiguousPrefix(BufferedWriter bw,
-                                             ConcurrentSkipListMap<Integer, org.factorial.model.Messages.Msg> pending,
-                                             int nextToWrite) throws IOException {
-        org.factorial.model.Messages.Msg m;
-        while ((m = pending.remove(nextToWrite)) != null) {
-            writeOne(bw, m);
-            bw.flush();
-            nextToWrite++;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public record WriterTask(Path outputPath, BlockingQueue<org.factorial.model.Messages.Msg> resultsQueue,
+                         Options options, AtomicInteger pendingLines,
+                         PipelineMetrics metrics, Checkpointer checkpoints) implements Runnable {
+
+    private static final int BUFFER_BYTES = 1 << 16;
+    /** Messages taken from the queue per wake-up; one drainTo instead of a take per message. */
+    private static final int DRAIN_MAX = 256;
+    private static final byte[] EQUALS = " = ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    /** Flush once this many bytes are buffered, or when the oldest unflushed line is this old. */
+    public record Options(int flushBytes, int flushMs) {
+        public static final Options DEFAULTS = new Options(BUFFER_BYTES, 50);
+
+        public static Options from(AppConfig cfg) {
+            return new Options(cfg.outputFlushBytes, cfg.outputFlushMs);
+        }
+    }
+
+    /** A writer with {@link Options#DEFAULTS}, its own pending count and metrics, and no checkpoints. */
+    public static Builder builder(Path outputPath, BlockingQueue<org.factorial.model.Messages.Msg> resultsQueue) {
+        return new Builder(outputPath, resultsQueue);
+    }
+
+    public static final class Builder {
+        private final Path outputPath;
+        private final BlockingQueue<org.factorial.model.Messages.Msg> resultsQueue;
+        private Options options = Options.DEFAULTS;
+        private AtomicInteger pendingLines;
+        private PipelineMetrics metrics;
+        private Checkpointer checkpoints;
+
+        private Builder(Path outputPath, BlockingQueue<org.factorial.model.Messages.Msg> resultsQueue) {
+            this.outputPath = outputPath;
+            this.resultsQueue = resultsQueue;
+        }
+
+        public Builder options(Options options) { this.options = options; return this; }
+        public Builder pendingLines(AtomicInteger pendingLines) { this.pendingLines = pendingLines; return this; }
+        public Builder metrics(PipelineMetrics metrics) { this.metrics = metrics; return this; }
+        public Builder checkpoints(Checkpointer checkpoints) { this.checkpoints = checkpoints; return this; }
+
+        public WriterTask build() {
+            return new WriterTask(outputPath, resultsQueue, options,
+                    pendingLines != null ? pendingLines : new AtomicInteger(),
+                    metrics != null ? metrics : new PipelineMetrics(), checkpoints);
         }
-        return nextToWrite;
     }
 
-    private static org.factorial.model.Messages.Msg prefer(org.factorial.model.Messages.Msg a, org.factorial.model.Messages.Msg b) {
-        return Comparator.comparingInt((org.factorial.model.Messages.Msg m) -> priority(m.type()))
-                .reversed()
-                .thenComparingInt(org.factorial.model.Messages.Msg::index)
-                .compare(a, b) >= 0 ? a : b;
+    static byte[] encodeResult(int value, BigInteger factorial) {
+        var buf = new ByteArrayOutputStream(Math.max(32, (int) (factorial.bitLength() * 0.302) + 24));
+        try {
+            writeResult(buf, String.valueOf(value), factorial);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return buf.toByteArray();
     }
 
-    private static int priority(org.factorial.model.Messages.Type t) {
-        return switch (t) {
-            case RESULT -> 4;
-            case RAW_ERROR -> 3;
-            case ERROR_MSG -> 2;
-            case SKIP -> 1;
-            case POISON -> 0;
-        };
+    private static void writeResult(OutputStream out, String value, BigInteger factorial) throws IOException {
+        out.write(value.getBytes(StandardCharsets.US_ASCII));
+        out.write(EQUALS);
+        DecimalRenderer.write(factorial, out);
+        out.write(NEWLINE);
     }
 
-    private static void writeOne(BufferedWriter bw, org.factorial.model.Messages.Msg m) throws IOException {
+    private static void writeOne(OutputStream out, org.factorial.model.Messages.Msg m) throws IOException {
         switch (m.type()) {
-            case RESULT -> { bw.write(m.value() + " = " + m.factorial()); bw.newLine(); }
-            case RAW_ERROR -> { bw.write(m.rawLine()); bw.newLine(); }
-            case ERROR_MSG -> { bw.write(m.errorMsg()); bw.newLine(); }
-            case SKIP, POISON -> {  }
+            case RESULT -> {
+                if (m.encoded() != null) out.write(m.encoded());
+                else writeResult(out, m.value(), m.factorial());
+            }
+            case RAW_ERROR -> { out.write(m.rawLine().getBytes(StandardCharsets.UTF_8)); out.write(NEWLINE); }
+            case ERROR_MSG -> { out.write(m.errorMsg().getBytes(StandardCharsets.UTF_8)); out.write(NEWLINE); }
+            case SKIP, BATCH, POISON -> {  }
         }
     }
 
+    /**
+     * With {@code checkpoints}, a resumed run appends to the output (already cut back to the checkpoint)
+     * starting at its line index, and every flush may make the latest reader mark a stable checkpoint.
+     */
     @Override public void run() {
-        try (BufferedWriter bw = Files.newBufferedWriter(
+        Checkpointer.State resumed = checkpoints == null ? null : checkpoints.resumed();
+        try (CountingOutputStream out = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(
                 outputPath,
                 StandardOpenOption.CREATE,
-                StandardOpenOption.TRUNCATE_EXISTING,
+                resumed != null ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING,
                 StandardOpenOption.WRITE
-        )) {
-            ConcurrentSkipListMap<Integer, org.factorial.model.Messages.Msg> pending = new ConcurrentSkipListMap<>();
-            int nextToWrite = 0;
+        ), BUFFER_BYTES), resumed == null ? 0 : resumed.outputOffset())) {
+            ReorderBuffer pending = new ReorderBuffer(1024, resumed == null ? 0 : resumed.lineIndex());
+            LatencyHistogram reorderWait = metrics.stage(PipelineMetrics.Stage.REORDER_WAIT);
+            LatencyHistogram write = metrics.stage(PipelineMetrics.Stage.WRITE);
+            IngestTimes unflushed = new IngestTimes();
+            List<org.factorial.model.Messages.Msg> drained = new ArrayList<>(DRAIN_MAX);
+            long flushedBytes = out.count();
+            long dirtySinceNs = 0;
+            int errorLines = resumed == null ? 0 : resumed.errors();
             while (true) {
-                org.factorial.model.Messages.Msg m = resultsQueue.take();
-                if (m.type() == org.factorial.model.Messages.Type.POISON) break;
-                pending.merge(m.index(), m, WriterTask::prefer);
-                nextToWrite = flushContiguousPrefix(bw, pending, nextToWrite);
+                org.factorial.model.Messages.Msg m;
+                if (out.count() == flushedBytes) {
+                    m = resultsQueue.take();
+                } else {
+                    long waitNs = TimeUnit.MILLISECONDS.toNanos(options.flushMs()) - (System.nanoTime() - dirtySinceNs);
+                    m = waitNs > 0 ? resultsQueue.poll(waitNs, TimeUnit.NANOSECONDS) : null;
+                }
+                if (m == null) {
+                    out.flush();
+                    flushedBytes = out.count();
+                    if (checkpoints != null) checkpoints.flushed(flushedBytes);
+                    unflushed.recordAndClear(metrics.lineLatency());
+                    continue;
+                }
+                drained.add(m);
+                resultsQueue.drainTo(drained, DRAIN_MAX - 1);
+                boolean poisoned = false;
+                long arrivedNs = System.nanoTime();
+                for (org.factorial.model.Messages.Msg d : drained) {
+                    if (d.type() == org.factorial.model.Messages.Type.POISON) {
+                        poisoned = true;
+                        break;
+                    }
+                    if (d.type() == org.factorial.model.Messages.Type.BATCH) {
+                        for (org.factorial.model.Messages.Msg part : d.parts()) pending.put(part, arrivedNs);
+                    } else {
+                        pending.put(d, arrivedNs);
+                    }
+                }
+                drained.clear();
+                boolean wasClean = out.count() == flushedBytes;
+                while ((m = pending.pollNext()) != null) {
+                    long startNs = System.nanoTime();
+                    if (checkpoints != null) checkpoints.beforeWrite(m.index(), out.count(), errorLines);
+                    writeOne(out, m);
+                    if (m.type() != org.factorial.model.Messages.Type.RESULT) errorLines++;
+                    if (m.type() != org.factorial.model.Messages.Type.SKIP) {
+                        reorderWait.record(startNs - pending.lastArrivalNanos());
+                        write.record(System.nanoTime() - startNs);
+                    }
+                    if (m.ingestNanos() != 0) unflushed.add(m.ingestNanos());
+                }
+                pendingLines.lazySet(pending.size());
+                if (wasClean && out.count() != flushedBytes) dirtySinceNs = System.nanoTime();
+                if (out.count() - flushedBytes >= options.flushBytes()) {
+                    out.flush();
+                    flushedBytes = out.count();
+                    if (checkpoints != null) checkpoints.flushed(flushedBytes);
+                    unflushed.recordAndClear(metrics.lineLatency());
+                }
+                if (poisoned) break;
             }
+            out.flush();
+            if (checkpoints != null) checkpoints.flushed(out.count());
+            unflushed.recordAndClear(metrics.lineLatency());
         } catch (InterruptedException ie) {
             Thread.currentThread().interrupt();
         } catch (IOException ioe) {
             System.err.println("I/O error in writer: " + ioe.getMessage());
         }
     }
+
+    /** Ingest timestamps of lines written since the last flush; a line counts as output once flushed. */
+    private static final class IngestTimes {
+        private long[] times = new long[256];
+        private int size;
+
+        void add(long ingestNanos) {
+            if (size == times.length) times = Arrays.copyOf(times, size * 2);
+            times[size++] = ingestNanos;
+        }
+
+        void recordAndClear(LatencyHistogram histogram) {
+            long now = System.nanoTime();
+            for (int i = 0; i < size; i++) histogram.record(now - times[i]);
+            size = 0;
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out, long start) {
+            super(out);
+            count = start;
+        }
+
+        long count() { return count; }
+
+        @Override public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
 }
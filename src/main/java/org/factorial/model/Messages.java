@@ -1,18 +1,41 @@
 package org.factorial.model;
 
 import java.math.BigInteger;
+import java.util.List;
 
 public final class Messages {
     public static Msg value(int index, int value, BigInteger factorial) {
         return new Msg(index, Type.RESULT, String.valueOf(value), factorial, null, null);
     }
+    public static Msg value(int index, int value, BigInteger factorial, long ingestNanos) {
+        return new Msg(index, Type.RESULT, String.valueOf(value), factorial, null, null, null, ingestNanos);
+    }
+    public static Msg rendered(int index, int value, byte[] encodedLine) {
+        return rendered(index, value, encodedLine, 0L);
+    }
+    public static Msg rendered(int index, int value, byte[] encodedLine, long ingestNanos) {
+        return new Msg(index, Type.RESULT, String.valueOf(value), null, null, null, encodedLine, ingestNanos);
+    }
     public static Msg raw(int index, String originalLine) {
         return new Msg(index, Type.RAW_ERROR, null, null, originalLine, null);
     }
     public static Msg skip(int index) { return new Msg(index, Type.SKIP, null, null, null, null); }
+    /** One queue hand-off for the results of a worker batch; the writer unpacks {@code parts}. */
+    public static Msg batch(List<Msg> parts) {
+        return new Msg(parts.get(0).index(), Type.BATCH, null, null, null, null, null, 0L, List.copyOf(parts));
+    }
     public static Msg poison() { return new Msg(Integer.MAX_VALUE, Type.POISON, null, null, null, null); }
-    public enum Type {RESULT, RAW_ERROR, ERROR_MSG, SKIP, POISON}
-    public record Msg(int index, Type type, String value, BigInteger factorial, String rawLine, String errorMsg) {
+    public enum Type {RESULT, RAW_ERROR, ERROR_MSG, SKIP, BATCH, POISON}
+    /** {@code ingestNanos} is the {@link System#nanoTime()} at which the reader took the line, or 0. */
+    public record Msg(int index, Type type, String value, BigInteger factorial, String rawLine, String errorMsg,
+                      byte[] encoded, long ingestNanos, List<Msg> parts) {
+        public Msg(int index, Type type, String value, BigInteger factorial, String rawLine, String errorMsg) {
+            this(index, type, value, factorial, rawLine, errorMsg, null, 0L);
+        }
+        public Msg(int index, Type type, String value, BigInteger factorial, String rawLine, String errorMsg,
+                   byte[] encoded, long ingestNanos) {
+            this(index, type, value, factorial, rawLine, errorMsg, encoded, ingestNanos, null);
+        }
         public boolean isPoison() { return type == Type.POISON; }
     }
 }
@@ -0,0 +1,58 @@
+package org.factorial.monitor;
+
+import org.factorial.compute.RateLimiter;
+import org.factorial.config.AppConfig;
+
+import java.util.function.IntSupplier;
+
+/**
+ * AIMD control of the limiter's rate, always within [min, max]. Every interval the rate is cut by
+ * {@code decreasePercent} when the output backlog (results queue plus the writer's reorder buffer) is
+ * above its high-water mark, or when the lag (lane slots in use) is and the limiter held nothing back,
+ * i.e. compute rather than the rate filled the lanes. Otherwise it is raised by {@code step}, but only
+ * if the limiter made some task wait during the interval; an idle or compute-bound pipeline keeps its rate.
+ */
+public record AdaptiveRateController(
+        RateLimiter limiter,
+        IntSupplier backlog,
+        IntSupplier lag,
+        Settings settings
+) implements Runnable {
+
+    public record Settings(int minRate, int maxRate, int step, int decreasePercent,
+                           int backlogHigh, int lagHigh, int intervalMs) {
+        /** {@code slots}: the lanes' total slot count, from which {@code rate.adaptive.lag.high=0} takes 3/4. */
+        public static Settings from(AppConfig cfg, int slots) {
+            int lagHigh = cfg.rateAdaptiveLagHigh > 0 ? cfg.rateAdaptiveLagHigh : Math.max(1, slots * 3 / 4);
+            return new Settings(cfg.rateAdaptiveMin, cfg.rateAdaptiveMax, cfg.rateAdaptiveStep,
+                    cfg.rateAdaptiveDecreasePercent, cfg.rateAdaptiveBacklogHigh, lagHigh,
+                    cfg.rateAdaptiveIntervalMs);
+        }
+    }
+
+    @Override public void run() {
+        limiter.setRate(clamp(limiter.rate()));
+        long throttled = limiter.throttled();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Thread.sleep(settings.intervalMs());
+                long nowThrottled = limiter.throttled();
+                int current = limiter.rate();
+                int next = next(current, backlog.getAsInt(), lag.getAsInt(), nowThrottled != throttled);
+                throttled = nowThrottled;
+                if (next != current) limiter.setRate(next);
+            }
+        } catch (InterruptedException ignored) { Thread.currentThread().interrupt(); }
+    }
+
+    /** {@code limited}: some reservation had to wait for permits during the interval. */
+    int next(int rate, int backlogLines, int lagSlots, boolean limited) {
+        boolean congested = backlogLines > settings.backlogHigh() || (!limited && lagSlots > settings.lagHigh());
+        if (congested) return clamp((long) rate * (100 - settings.decreasePercent()) / 100);
+        return clamp(limited ? (long) rate + settings.step() : rate);
+    }
+
+    private int clamp(long rate) {
+        return (int) Math.max(settings.minRate(), Math.min(settings.maxRate(), rate));
+    }
+}
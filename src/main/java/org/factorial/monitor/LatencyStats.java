@@ -0,0 +1,27 @@
+package org.factorial.monitor;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Count / mean / max of a latency measured in nanoseconds; safe for concurrent recording. */
+public final class LatencyStats {
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+    public void record(long nanos) {
+        if (nanos < 0) return;
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    public long count() { return count.sum(); }
+
+    public double meanMillis() {
+        long n = count.sum();
+        return n == 0 ? 0.0 : totalNanos.sum() / 1e6 / n;
+    }
+
+    public double maxMillis() { return maxNanos.get() / 1e6; }
+}
@@ -0,0 +1,191 @@
+package org.factorial.monitor;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Per-stage latency histograms for one pipeline run, the end-to-end line latency (read until
+ * flushed to the output), and the counters and gauges registered by the pipeline. Rendered as
+ * Prometheus text by {@link #renderPrometheus()} and exposed over JMX, one bean per instance.
+ */
+public final class PipelineMetrics implements PipelineMetricsMXBean {
+    public static final String OBJECT_NAME = "org.factorial:type=PipelineMetrics";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final AtomicInteger INSTANCE_IDS = new AtomicInteger();
+
+    /** Where a line spends its time, in pipeline order. */
+    public enum Stage {
+        /** Line read until its task was handed to a lane (batching and slot backpressure). */
+        READ_TO_SUBMIT,
+        /** Task handed to the executor until a worker started it. */
+        QUEUE_WAIT,
+        /** Wait for rate-limit permits, per task. */
+        RATE_LIMIT_WAIT,
+        /** Worker starting the line until its result (rendered, if workers render) is ready. */
+        COMPUTE,
+        /** Result reaching the writer until all earlier lines arrived and it could be written. */
+        REORDER_WAIT,
+        /** Encoding and buffering one output line. */
+        WRITE;
+
+        public String label() { return name().toLowerCase(Locale.ROOT); }
+    }
+
+    private record Metric(String name, String labels, String help, String type, LongSupplier value) { }
+
+    private final Map<Stage, LatencyHistogram> stages = new EnumMap<>(Stage.class);
+    private final LatencyHistogram lineLatency = new LatencyHistogram();
+    private final List<Metric> metrics = new CopyOnWriteArrayList<>();
+    private ObjectName registered;
+
+    public PipelineMetrics() {
+        for (Stage s : Stage.values()) stages.put(s, new LatencyHistogram());
+    }
+
+    public LatencyHistogram stage(Stage stage) { return stages.get(stage); }
+
+    public void record(Stage stage, long nanos) { stages.get(stage).record(nanos); }
+
+    public LatencyHistogram lineLatency() { return lineLatency; }
+
+    /** Monotonic value such as lines read; exported with a {@code _total} suffix. */
+    public PipelineMetrics counter(String name, String help, LongSupplier value) {
+        metrics.add(new Metric(name + "_total", "", help, "counter", value));
+        return this;
+    }
+
+    public PipelineMetrics gauge(String name, String help, LongSupplier value) {
+        return gauge(name, "", help, value);
+    }
+
+    /** Gauge with a label set such as {@code lane="small"}; entries sharing a name share HELP/TYPE. */
+    public PipelineMetrics gauge(String name, String labels, String help, LongSupplier value) {
+        metrics.add(new Metric(name, labels, help, "gauge", value));
+        return this;
+    }
+
+    public String renderPrometheus() {
+        StringBuilder sb = new StringBuilder(4096);
+        Map<String, List<Metric>> byName = new LinkedHashMap<>();
+        for (Metric m : metrics) byName.computeIfAbsent(m.name(), k -> new ArrayList<>()).add(m);
+        for (List<Metric> group : byName.values()) {
+            Metric first = group.get(0);
+            sb.append("# HELP ").append(first.name()).append(' ').append(first.help()).append('\n');
+            sb.append("# TYPE ").append(first.name()).append(' ').append(first.type()).append('\n');
+            for (Metric m : group) {
+                sb.append(m.name());
+                if (!m.labels().isEmpty()) sb.append('{').append(m.labels()).append('}');
+                sb.append(' ').append(m.value().getAsLong()).append('\n');
+            }
+        }
+        sb.append("# HELP factorial_stage_seconds Per-line latency of each pipeline stage.\n");
+        sb.append("# TYPE factorial_stage_seconds summary\n");
+        for (Stage s : Stage.values()) {
+            LatencyHistogram h = stages.get(s);
+            for (double q : QUANTILES) {
+                sb.append("factorial_stage_seconds{stage=\"").append(s.label()).append("\",quantile=\"").append(q)
+                        .append("\"} ").append(seconds(h.percentileNanos(q))).append('\n');
+            }
+            sb.append("factorial_stage_seconds_sum{stage=\"").append(s.label()).append("\"} ")
+                    .append(seconds(h.totalNanos())).append('\n');
+            sb.append("factorial_stage_seconds_count{stage=\"").append(s.label()).append("\"} ")
+                    .append(h.count()).append('\n');
+        }
+        sb.append("# HELP factorial_line_latency_seconds Line read until its output was flushed.\n");
+        sb.append("# TYPE factorial_line_latency_seconds summary\n");
+        for (double q : QUANTILES) {
+            sb.append("factorial_line_latency_seconds{quantile=\"").append(q).append("\"} ")
+                    .append(seconds(lineLatency.percentileNanos(q))).append('\n');
+        }
+        sb.append("factorial_line_latency_seconds_sum ").append(seconds(lineLatency.totalNanos())).append('\n');
+        sb.append("factorial_line_latency_seconds_count ").append(lineLatency.count()).append('\n');
+        sb.append("# HELP factorial_stage_max_seconds Slowest line seen in each stage.\n");
+        sb.append("# TYPE factorial_stage_max_seconds gauge\n");
+        for (Stage s : Stage.values()) {
+            sb.append("factorial_stage_max_seconds{stage=\"").append(s.label()).append("\"} ")
+                    .append(seconds(stages.get(s).maxNanos())).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Registers as {@code OBJECT_NAME,name=<source>,id=<n>}. The id is unique per instance, so several
+     * pipelines in one JVM (directory mode, tests) each keep their own bean. Returns the name, or null.
+     */
+    public synchronized ObjectName registerMBean(String source) {
+        if (registered != null) return registered;
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME + ",name=" + ObjectName.quote(source)
+                    + ",id=" + INSTANCE_IDS.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            registered = name;
+        } catch (JMException e) {
+            System.err.println("JMX registration failed: " + e.getMessage());
+        }
+        return registered;
+    }
+
+    /** Removes the bean this instance registered; other instances' beans are left alone. */
+    public synchronized void unregisterMBean() {
+        if (registered == null) return;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(registered)) server.unregisterMBean(registered);
+        } catch (JMException e) {
+            System.err.println("JMX unregistration failed: " + e.getMessage());
+        }
+        registered = null;
+    }
+
+    @Override public Map<String, Long> getCounters() {
+        Map<String, Long> out = new LinkedHashMap<>();
+        for (Metric m : metrics) {
+            out.put(m.labels().isEmpty() ? m.name() : m.name() + '{' + m.labels() + '}', m.value().getAsLong());
+        }
+        return out;
+    }
+
+    @Override public Map<String, Long> getStageCounts() {
+        Map<String, Long> out = new LinkedHashMap<>();
+        for (Stage s : Stage.values()) out.put(s.label(), stages.get(s).count());
+        return out;
+    }
+
+    @Override public Map<String, Double> getStageMeanMillis() { return perStage(LatencyHistogram::meanMillis); }
+
+    @Override public Map<String, Double> getStageP50Millis() { return perStage(h -> h.percentileMillis(0.5)); }
+
+    @Override public Map<String, Double> getStageP99Millis() { return perStage(h -> h.percentileMillis(0.99)); }
+
+    @Override public Map<String, Double> getStageMaxMillis() { return perStage(h -> h.maxNanos() / 1e6); }
+
+    @Override public Map<String, Double> getLineLatencyMillis() {
+        Map<String, Double> out = new LinkedHashMap<>();
+        out.put("p50", lineLatency.percentileMillis(0.5));
+        out.put("p99", lineLatency.percentileMillis(0.99));
+        out.put("max", lineLatency.maxNanos() / 1e6);
+        return out;
+    }
+
+    private Map<String, Double> perStage(ToDoubleFunction<LatencyHistogram> f) {
+        Map<String, Double> out = new LinkedHashMap<>();
+        for (Stage s : Stage.values()) out.put(s.label(), f.applyAsDouble(stages.get(s)));
+        return out;
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+}
@@ -0,0 +1,21 @@
+package org.factorial.monitor;
+
+import java.util.Map;
+
+/** JMX view of {@link PipelineMetrics}: counters and gauges by metric name, stage latencies by stage. */
+public interface PipelineMetricsMXBean {
+    Map<String, Long> getCounters();
+
+    Map<String, Long> getStageCounts();
+
+    Map<String, Double> getStageMeanMillis();
+
+    Map<String, Double> getStageP50Millis();
+
+    Map<String, Double> getStageP99Millis();
+
+    Map<String, Double> getStageMaxMillis();
+
+    /** End-to-end line latency: p50, p99 and max. */
+    Map<String, Double> getLineLatencyMillis();
+}
@@ -1,7 +1,10 @@
 package org.factorial.monitor;
 
-import org.factorial.model.Messages;
+import org.factorial.compute.FactorialService;
+import org.factorial.compute.RateLimiter;
+import org.factorial.io.ComputeLane;
 
+import java.util.List;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -11,8 +14,16 @@ public record ProgressTask(
         AtomicInteger completed,
         AtomicInteger errorsCount,
         ThreadPoolExecutor workers,
-        int intervalMs
+        FactorialService factorialService,
+        int intervalMs,
+        List<ComputeLane> lanes,
+        RateLimiter limiter
 ) implements Runnable {
+    public ProgressTask(AtomicInteger linesRead, AtomicInteger submitted, AtomicInteger completed, AtomicInteger errorsCount,
+                        ThreadPoolExecutor workers, FactorialService factorialService, int intervalMs) {
+        this(linesRead, submitted, completed, errorsCount, workers, factorialService, intervalMs, List.of(), null);
+    }
+
     @Override public void run() {
         try {
             while (!Thread.currentThread().isInterrupted()) {
@@ -23,10 +34,20 @@ public record ProgressTask(
     }
     private void printProgress() {
         System.out.printf(
-                "Progress | read %d | submitted %d | completed %d | errors %d (pool active %d, done %d)\r",
+                "Progress | read %d | submitted %d | completed %d | errors %d (pool active %d, done %d)"
+                        + " | cache hit %d, partial %d, miss %d, coalesced %d, evicted %d, %d KiB",
                 linesRead.get(), submitted.get(), completed.get(), errorsCount.get(),
-                workers.getActiveCount(), workers.getCompletedTaskCount()
+                workers.getActiveCount(), workers.getCompletedTaskCount(),
+                factorialService.cacheFullHits(), factorialService.cachePartialHits(),
+                factorialService.cacheMisses(), factorialService.coalescedRequests(), factorialService.cacheEvictions(),
+                factorialService.cacheBytes() >> 10
         );
+        if (limiter != null) System.out.printf(" | rate %d/s", limiter.rate());
+        for (ComputeLane lane : lanes) {
+            System.out.printf(" | %s q %d active %d avg %.1f ms", lane.name(), lane.queued(), lane.active(),
+                    lane.latency().meanMillis());
+        }
+        System.out.print('\r');
         System.out.flush();
     }
 }
\ No newline at end of file
@@ -3,19 +3,30 @@ package org.factorial.pipeline;
 import org.factorial.compute.FactorialService;
 import org.factorial.compute.RateLimiter;
 import org.factorial.config.AppConfig;
+import org.factorial.io.Checkpointer;
+import org.factorial.io.ComputeLane;
 import org.factorial.io.ErrorLogger;
+import org.factorial.io.MpscRingBuffer;
 import org.factorial.io.ReaderTask;
 import org.factorial.io.WriterTask;
 
 import org.factorial.model.Messages;
+import org.factorial.monitor.AdaptiveRateController;
+import org.factorial.monitor.MetricsHttpServer;
+import org.factorial.monitor.PipelineMetrics;
 import org.factorial.monitor.ProgressTask;
 
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 public class FactorialPipeline {
 
@@ -26,6 +37,8 @@ public class FactorialPipeline {
     private final AtomicInteger submitted = new AtomicInteger(0);
     private final AtomicInteger completed = new AtomicInteger(0);
     private final AtomicInteger errorsCount = new AtomicInteger(0);
+    private final AtomicInteger writerPending = new AtomicInteger(0);
+    private final PipelineMetrics metrics = new PipelineMetrics();
 
     private BlockingQueue<Messages.Msg> resultsQueue;
     private RateLimiter limiter;
@@ -35,6 +48,11 @@ public class FactorialPipeline {
         this.cfg = cfg;
     }
 
+    /** Histograms and registered gauges of this pipeline; filled in while {@link #run()} executes. */
+    public PipelineMetrics metrics() {
+        return metrics;
+    }
+
     private static boolean sameFile(Path a, Path b) {
         if (a == null || b == null) return false;
         try { return Files.isSameFile(a, b); }
@@ -42,47 +60,292 @@ public class FactorialPipeline {
     }
 
     public void run() {
+        if (cfg.inputDir != null) {
+            runDirectory();
+            return;
+        }
         long startNs = System.nanoTime();
-        this.resultsQueue = new LinkedBlockingQueue<>();
-        this.limiter = new RateLimiter(cfg.ratePerSecond);
+        this.resultsQueue = createResultsQueue();
+        this.limiter = new RateLimiter(cfg.ratePerSecond, cfg.rateBurst, cfg.rateCostPerPermit);
         boolean inlineErrors = sameFile(cfg.errorsPath, cfg.outputPath);
 
-        System.out.printf("CLI pool=%d, effective pool=%d, rate=%d/s, inlineErrors=%s%n",
-                requestedPoolSize, requestedPoolSize, cfg.ratePerSecond, inlineErrors);
+        boolean virtual = "virtual".equals(cfg.executorMode);
+        boolean paced = "dispatch".equals(cfg.rateMode);
+        System.out.printf("CLI pool=%d, effective pool=%d, rate=%d/s (%s), inlineErrors=%s, executor=%s%n",
+                requestedPoolSize, requestedPoolSize, cfg.ratePerSecond, cfg.rateMode, inlineErrors, cfg.executorMode);
 
-        final FactorialService factorialService = new FactorialService(cfg);
+        Checkpointer checkpoints;
+        try {
+            checkpoints = cfg.checkpointPath == null ? null : openCheckpoint(inlineErrors);
+        } catch (IOException e) {
+            System.err.println("Fatal I/O: cannot resume from checkpoint: " + e.getMessage());
+            return;
+        }
+        boolean resumed = checkpoints != null && checkpoints.resumed() != null;
 
-        try (ErrorLogger errorLogger = inlineErrors ? ErrorLogger.inline(resultsQueue) : ErrorLogger.toFile(cfg.errorsPath)) {
-            ThreadPoolExecutor workers = createWorkers(requestedPoolSize);
-            workers.prestartAllCoreThreads();
-            Thread writer = startWriter(cfg.outputPath);
-            Semaphore slots = new Semaphore(requestedPoolSize, true);
-            Thread progress = startProgress(workers, cfg.progressIntervalMs);
-            Thread reader = startReader(cfg.inputPath, errorLogger, workers, slots, factorialService);
+        MetricsHttpServer http = null;
+        ScheduledExecutorService checkpointer = null;
+        try (FactorialService factorialService = new FactorialService(cfg);
+             ErrorLogger errorLogger = inlineErrors ? ErrorLogger.inline(resultsQueue) : ErrorLogger.toFile(cfg.errorsPath, resumed)) {
+            int workerThreads = paced && !virtual
+                    ? Math.min(requestedPoolSize, Runtime.getRuntime().availableProcessors()) : requestedPoolSize;
+            ThreadPoolExecutor workers = createWorkers(workerThreads, requestedPoolSize, virtual);
+            ScheduledExecutorService pacer = paced ? createPacer() : null;
+            ExecutorService compute = virtual ? createCompute(cfg.executorComputeThreads) : null;
+            if (!virtual) workers.prestartAllCoreThreads();
+            Thread writer = startWriter(cfg.outputPath, checkpoints);
+            ComputeLane small = ComputeLane.of("small", workers, new Semaphore(requestedPoolSize, true),
+                    metrics.stage(PipelineMetrics.Stage.QUEUE_WAIT));
+            ComputeLane large = cfg.laneLargeThreads > 0 ? createLargeLane(cfg.laneLargeThreads, cfg.laneLargeQueue) : null;
+            List<ComputeLane> lanes = large == null ? List.of(small) : List.of(small, large);
+            List<FileRun> runs = List.of(new FileRun(resultsQueue, linesRead, submitted, completed, errorsCount, writerPending));
+            registerMetrics(factorialService, lanes, runs);
+            if (cfg.metricsJmx) metrics.registerMBean(cfg.inputPath.toString());
+            if (cfg.metricsHttpPort > 0) http = startMetricsHttp();
+            Thread progress = startProgress(workers, factorialService, cfg.progressIntervalMs, lanes);
+            Thread rateControl = cfg.rateAdaptive ? startRateControl(runs, lanes) : null;
+            if (checkpoints != null) checkpointer = startCheckpoints(checkpoints);
+            Thread reader = startReader(cfg.inputPath, errorLogger, small, large, compute, pacer, factorialService, checkpoints);
 
             reader.join();
             while (completed.get() < submitted.get()) Thread.sleep(10);
 
             workers.shutdown();
+            if (large != null) large.executor().shutdown();
+            if (compute != null) compute.shutdown();
+            if (pacer != null) pacer.shutdown();
             limiter.shutdown();
 
             resultsQueue.put(Messages.poison());
             writer.join();
+            if (checkpoints != null) {
+                checkpointer.shutdown();
+                checkpointer.awaitTermination(5, TimeUnit.SECONDS);
+                checkpoints.delete();
+            }
             if (progress.isAlive()) progress.interrupt();
+            if (rateControl != null) rateControl.interrupt();
 
             long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNs);
             System.out.printf(
                     "Progress | read %d | submitted %d | completed %d | errors %d | pool %d | rate %d/s | mode=%s | elapsed %s (%d ms)%n",
                     linesRead.get(), submitted.get(), completed.get(), errorsCount.get(),
-                    requestedPoolSize, cfg.ratePerSecond,
+                    requestedPoolSize, limiter.rate(),
                     inlineErrors ? "INLINE_TO_OUTPUT" : "SEPARATE_FILE",
                     format(Duration.ofMillis(elapsedMs)), elapsedMs
             );
+            System.out.printf("Latency | lines %d | ingest-to-output avg %.2f ms | p50 %.2f ms | p99 %.2f ms | max %.2f ms%n",
+                    metrics.lineLatency().count(), metrics.lineLatency().meanMillis(),
+                    metrics.lineLatency().percentileMillis(0.5), metrics.lineLatency().percentileMillis(0.99),
+                    metrics.lineLatency().maxMillis());
+            for (ComputeLane lane : lanes) {
+                System.out.printf("Lane %s | tasks %d | submit-to-done avg %.2f ms | max %.2f ms%n", lane.name(),
+                        lane.latency().count(), lane.latency().meanMillis(), lane.latency().maxMillis());
+            }
+            for (PipelineMetrics.Stage stage : PipelineMetrics.Stage.values()) {
+                var h = metrics.stage(stage);
+                System.out.printf("Stage %s | n %d | p50 %.3f ms | p99 %.3f ms | max %.3f ms%n", stage.label(),
+                        h.count(), h.percentileMillis(0.5), h.percentileMillis(0.99), h.maxNanos() / 1e6);
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         } catch (IOException e) {
             System.err.println("Fatal I/O: " + e.getMessage());
+        } finally {
+            if (checkpointer != null) checkpointer.shutdownNow();
+            if (http != null) http.close();
+            if (cfg.metricsJmx) metrics.unregisterMBean();
+        }
+    }
+
+    /**
+     * With {@code checkpoint.resume} and a checkpoint that matches the files, cuts the output and errors
+     * files back to it and restores the counters; the reader and writer then continue from its line.
+     * Errors-file entries for later lines, logged ahead of the writer, are dropped and logged again.
+     */
+    private Checkpointer openCheckpoint(boolean inlineErrors) throws IOException {
+        Checkpointer.State resumed = cfg.checkpointResume
+                ? Checkpointer.load(cfg.checkpointPath, cfg.inputPath, cfg.outputPath, cfg.errorsPath) : null;
+        if (resumed != null && inlineErrors != (resumed.errorsOffset() < 0)) {
+            System.err.println("Ignoring checkpoint " + cfg.checkpointPath + ": the error logging mode changed.");
+            resumed = null;
+        }
+        if (resumed != null) {
+            Checkpointer.truncate(cfg.outputPath, resumed.outputOffset());
+            if (!inlineErrors) ErrorLogger.resumeAt(cfg.errorsPath, resumed.errorsOffset(), resumed.lineIndex());
+            int valid = resumed.lineIndex() - resumed.errors();
+            linesRead.set(resumed.lineIndex());
+            errorsCount.set(resumed.errors());
+            submitted.set(valid);
+            completed.set(valid);
+            System.out.printf("Resuming from %s at line %d (input offset %d, output offset %d)%n", cfg.checkpointPath,
+                    resumed.lineIndex() + 1, resumed.inputOffset(), resumed.outputOffset());
+        }
+        return new Checkpointer(cfg.checkpointPath, cfg.inputPath, inlineErrors ? null : cfg.errorsPath,
+                Math.max(10, cfg.checkpointIntervalMs / 10), resumed);
+    }
+
+    /** Saves the latest stable point every {@code checkpoint.interval.ms}, off the writer thread. */
+    private ScheduledExecutorService startCheckpoints(Checkpointer checkpoints) {
+        ScheduledExecutorService exec = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "checkpoint");
+            t.setDaemon(true);
+            return t;
+        });
+        exec.scheduleWithFixedDelay(() -> {
+            try {
+                checkpoints.save();
+            } catch (IOException e) {
+                System.err.println("Checkpoint not saved: " + e.getMessage());
+            }
+        }, cfg.checkpointIntervalMs, cfg.checkpointIntervalMs, TimeUnit.MILLISECONDS);
+        return exec;
+    }
+
+    /**
+     * Directory mode: every file in {@code input.dir} matching {@code input.dir.glob} gets its own
+     * reader, results channel, writer and output/error files, while the workers, lanes, rate limiter
+     * and factorial cache are shared. Up to {@code input.dir.parallel} files run at once. Their readers
+     * take task slots from one fair semaphore, so waiting files are served in turn and a file left
+     * running alone gets every slot. A finished file's counters are folded into running totals.
+     */
+    private void runDirectory() {
+        long startNs = System.nanoTime();
+        List<Path> files;
+        try {
+            files = listInputs(cfg.inputDir, cfg.inputDirGlob);
+        } catch (IOException e) {
+            System.err.println("Fatal I/O: cannot list " + cfg.inputDir + ": " + e.getMessage());
+            return;
+        }
+        if (cfg.checkpointPath != null) System.err.println("checkpoint.path is ignored in directory mode.");
+        if (sameFile(cfg.inputDir, cfg.outputDir) || sameFile(cfg.inputDir, cfg.errorsDir)) {
+            System.err.println("Error: output.dir and errors.dir must differ from input.dir.");
+            return;
+        }
+        this.limiter = new RateLimiter(cfg.ratePerSecond, cfg.rateBurst, cfg.rateCostPerPermit);
+        boolean inlineErrors = sameFile(cfg.errorsDir, cfg.outputDir);
+        boolean virtual = "virtual".equals(cfg.executorMode);
+        boolean paced = "dispatch".equals(cfg.rateMode);
+        int parallel = Math.max(1, Math.min(cfg.inputDirParallel, files.size()));
+        System.out.printf("CLI pool=%d, files=%d, parallel=%d, rate=%d/s (%s), inlineErrors=%s, executor=%s%n",
+                requestedPoolSize, files.size(), parallel, cfg.ratePerSecond, cfg.rateMode, inlineErrors,
+                cfg.executorMode);
+
+        MetricsHttpServer http = null;
+        FileRun finished = FileRun.create(new LinkedBlockingQueue<>());
+        List<FileRun> runs = new CopyOnWriteArrayList<>(List.of(finished));
+        try (FactorialService factorialService = new FactorialService(cfg)) {
+            Files.createDirectories(cfg.outputDir);
+            Files.createDirectories(cfg.errorsDir);
+            int workerThreads = paced && !virtual
+                    ? Math.min(requestedPoolSize, Runtime.getRuntime().availableProcessors()) : requestedPoolSize;
+            ThreadPoolExecutor workers = createWorkers(workerThreads, requestedPoolSize, virtual);
+            ScheduledExecutorService pacer = paced ? createPacer() : null;
+            ExecutorService compute = virtual ? createCompute(cfg.executorComputeThreads) : null;
+            if (!virtual) workers.prestartAllCoreThreads();
+            ComputeLane large = cfg.laneLargeThreads > 0 ? createLargeLane(cfg.laneLargeThreads, cfg.laneLargeQueue) : null;
+            ComputeLane small = ComputeLane.of("small", workers, new Semaphore(requestedPoolSize, true),
+                    metrics.stage(PipelineMetrics.Stage.QUEUE_WAIT));
+            List<ComputeLane> lanes = large == null ? List.of(small) : List.of(small, large);
+            registerMetrics(factorialService, lanes, runs);
+            if (cfg.metricsJmx) metrics.registerMBean(cfg.inputDir.toString());
+            if (cfg.metricsHttpPort > 0) http = startMetricsHttp();
+            Thread rateControl = cfg.rateAdaptive ? startRateControl(runs, lanes) : null;
+
+            AtomicInteger seq = new AtomicInteger();
+            ExecutorService fileRunners = Executors.newFixedThreadPool(parallel, r -> new Thread(r, "file-" + seq.incrementAndGet()));
+            List<Future<?>> pending = new ArrayList<>(files.size());
+            for (Path file : files) {
+                pending.add(fileRunners.submit(() -> {
+                    FileRun run = FileRun.create(createResultsQueue());
+                    runs.add(run);
+                    try {
+                        processFile(file, run, inlineErrors, small, large, compute, pacer, factorialService);
+                    } finally {
+                        // Drops the run, and with it the file's results channel, once its counts are in the totals.
+                        synchronized (runs) {
+                            finished.absorb(run);
+                            runs.remove(run);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            fileRunners.shutdown();
+            for (int i = 0; i < pending.size(); i++) {
+                try {
+                    pending.get(i).get();
+                } catch (ExecutionException e) {
+                    System.err.println("File " + files.get(i).getFileName() + " failed: " + e.getCause());
+                }
+            }
+
+            workers.shutdown();
+            if (large != null) large.executor().shutdown();
+            if (compute != null) compute.shutdown();
+            if (pacer != null) pacer.shutdown();
+            limiter.shutdown();
+            if (rateControl != null) rateControl.interrupt();
+
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNs);
+            System.out.printf("Directory | files %d | read %d | submitted %d | completed %d | errors %d | elapsed %s (%d ms)%n",
+                    files.size(), sum(runs, FileRun::linesRead), sum(runs, FileRun::submitted),
+                    sum(runs, FileRun::completed), sum(runs, FileRun::errorsCount),
+                    format(Duration.ofMillis(elapsedMs)), elapsedMs);
+            System.out.printf("Latency | lines %d | ingest-to-output avg %.2f ms | p50 %.2f ms | p99 %.2f ms | max %.2f ms%n",
+                    metrics.lineLatency().count(), metrics.lineLatency().meanMillis(),
+                    metrics.lineLatency().percentileMillis(0.5), metrics.lineLatency().percentileMillis(0.99),
+                    metrics.lineLatency().maxMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println("Fatal I/O: " + e.getMessage());
+        } finally {
+            if (http != null) http.close();
+            if (cfg.metricsJmx) metrics.unregisterMBean();
+        }
+    }
+
+    /** One file of directory mode, read to its end: reader on this thread, its own writer thread. */
+    private void processFile(Path in, FileRun run, boolean inlineErrors, ComputeLane lane, ComputeLane large,
+                             ExecutorService compute, ScheduledExecutorService pacer, FactorialService factorialService)
+            throws IOException, InterruptedException {
+        long startNs = System.nanoTime();
+        Path name = in.getFileName();
+        try (ErrorLogger errorLogger = inlineErrors ? ErrorLogger.inline(run.results()) : ErrorLogger.toFile(cfg.errorsDir.resolve(name))) {
+            Thread writer = new Thread(WriterTask.builder(cfg.outputDir.resolve(name), run.results())
+                    .options(WriterTask.Options.from(cfg)).pendingLines(run.writerPending())
+                    .metrics(metrics).build(), "writer-" + name);
+            writer.start();
+            ReaderTask.builder(in, run.results(), errorLogger, limiter, lane, factorialService)
+                    .counters(run.linesRead(), run.submitted(), run.completed(), run.errorsCount())
+                    .options(ReaderTask.Options.from(cfg)).compute(compute).largeLane(large).pacer(pacer).metrics(metrics)
+                    .build().run();
+            while (run.completed().get() < run.submitted().get()) Thread.sleep(10);
+            run.results().put(Messages.poison());
+            writer.join();
         }
+        System.out.printf("File %s | read %d | errors %d | %d ms%n", name, run.linesRead().get(), run.errorsCount().get(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNs));
+    }
+
+    static List<Path> listInputs(Path dir, String glob) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, glob)) {
+            for (Path p : stream) if (Files.isRegularFile(p)) files.add(p);
+        }
+        files.sort(Comparator.comparing(p -> p.getFileName().toString()));
+        return files;
+    }
+
+    /** Locks {@code runs} so a run being folded into the totals is counted exactly once. */
+    private static long sum(List<FileRun> runs, Function<FileRun, AtomicInteger> counter) {
+        long total = 0;
+        synchronized (runs) {
+            for (FileRun run : runs) total += counter.apply(run).get();
+        }
+        return total;
     }
 
     private static String format(Duration d) {
@@ -93,14 +356,19 @@ public class FactorialPipeline {
         return String.format("%02d:%02d:%02d.%03d", h, m, s, ms);
     }
 
-    private ThreadPoolExecutor createWorkers(int size) {
-        ThreadFactory tf = r -> {
+    /**
+     * Platform mode: {@code size} OS threads that also compute. Virtual mode: {@code size} virtual
+     * threads that only wait on the limiter and the results queue; see {@link #createCompute}.
+     * The queue is sized from {@code slots}, the number of tasks the reader may have in flight.
+     */
+    private ThreadPoolExecutor createWorkers(int size, int slots, boolean virtual) {
+        ThreadFactory tf = virtual ? Thread.ofVirtual().name("vworker-", 0).factory() : r -> {
             Thread t = new Thread(r);
             t.setName("worker-" + t.getId());
             t.setDaemon(false);
             return t;
         };
-        BlockingQueue<Runnable> queue = new LinkedBlockingQueue<>(size * 4);
+        BlockingQueue<Runnable> queue = new LinkedBlockingQueue<>(slots * 4);
         ThreadPoolExecutor exec = new ThreadPoolExecutor(
                 size, size,
                 0L, TimeUnit.MILLISECONDS,
@@ -111,30 +379,151 @@ public class FactorialPipeline {
         return exec;
     }
 
-    private Thread startWriter(Path out) throws IOException {
-        Thread writer = new Thread(new WriterTask(out, resultsQueue), "writer");
+    /**
+     * Platform threads for n at or above {@code lane.large.min.n}. Its slots cover the queue as well,
+     * so the reader only blocks once {@code queue} giants are already waiting.
+     */
+    private ComputeLane createLargeLane(int threads, int queue) {
+        AtomicInteger seq = new AtomicInteger();
+        ThreadPoolExecutor exec = new ThreadPoolExecutor(
+                threads, threads,
+                0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, queue)),
+                r -> new Thread(r, "large-" + seq.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+        return ComputeLane.of("large", exec, new Semaphore(threads + queue, true), metrics.stage(PipelineMetrics.Stage.QUEUE_WAIT));
+    }
+
+    /**
+     * Worker-to-writer channel: an unbounded linked queue, or (results.channel=ring) a preallocated
+     * lock-free ring that makes producers back off when the writer is a full ring behind.
+     */
+    private BlockingQueue<Messages.Msg> createResultsQueue() {
+        if (!"ring".equals(cfg.resultsChannel)) return new LinkedBlockingQueue<>();
+        return new MpscRingBuffer<>(cfg.resultsRingCapacity, MpscRingBuffer.WaitStrategy.of(cfg.resultsRingWait));
+    }
+
+    /** Starts paced tasks when their rate-limit permits are due (rate.mode=dispatch). */
+    private static ScheduledExecutorService createPacer() {
+        ScheduledThreadPoolExecutor pacer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "pacer");
+            t.setDaemon(true);
+            return t;
+        });
+        pacer.setRemoveOnCancelPolicy(true);
+        return pacer;
+    }
+
+    /** Core-sized platform pool that runs the multiplication and rendering for virtual workers. */
+    private static ExecutorService createCompute(int threads) {
+        int n = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger seq = new AtomicInteger();
+        return Executors.newFixedThreadPool(n, r -> {
+            Thread t = new Thread(r, "compute-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private Thread startWriter(Path out, Checkpointer checkpoints) {
+        Thread writer = new Thread(WriterTask.builder(out, resultsQueue)
+                .options(WriterTask.Options.from(cfg)).pendingLines(writerPending)
+                .metrics(metrics).checkpoints(checkpoints).build(), "writer");
         writer.start();
         return writer;
     }
 
-    private Thread startReader(Path in, ErrorLogger logger, ThreadPoolExecutor workers, Semaphore slots, FactorialService factorialService) {
-        Thread reader = new Thread(new ReaderTask(
-                in, resultsQueue, logger, limiter, workers,
-                linesRead, submitted, completed, errorsCount,
-                slots, factorialService, 2000
-        ), "reader");
+    private Thread startReader(Path in, ErrorLogger logger, ComputeLane small, ComputeLane large, ExecutorService compute,
+                               ScheduledExecutorService pacer, FactorialService factorialService, Checkpointer checkpoints) {
+        Thread reader = new Thread(ReaderTask.builder(in, resultsQueue, logger, limiter, small, factorialService)
+                .counters(linesRead, submitted, completed, errorsCount)
+                .followIdleMs(cfg.inputFollowIdleMs).options(ReaderTask.Options.from(cfg))
+                .compute(compute).largeLane(large).pacer(pacer).metrics(metrics).checkpoints(checkpoints)
+                .build(), "reader");
         reader.start();
         return reader;
     }
 
-    private Thread startProgress(ThreadPoolExecutor workers, int intervalMs) {
+    private Thread startProgress(ThreadPoolExecutor workers, FactorialService factorialService, int intervalMs,
+                                 List<ComputeLane> lanes) {
         Thread progress = new Thread(new ProgressTask(
-                linesRead, submitted, completed, errorsCount, workers, intervalMs
+                linesRead, submitted, completed, errorsCount, workers, factorialService, intervalMs, lanes, limiter
         ), "progress");
         progress.setDaemon(true);
         progress.start();
         return progress;
     }
-}
 
+    /** Lag is the lanes' slots in use: tasks booked, waiting for permits, queued or computing. */
+    private Thread startRateControl(List<FileRun> runs, List<ComputeLane> lanes) {
+        int slots = requestedPoolSize + (cfg.laneLargeThreads > 0 ? cfg.laneLargeThreads + cfg.laneLargeQueue : 0);
+        Thread control = new Thread(new AdaptiveRateController(
+                limiter,
+                () -> {
+                    int backlog = 0;
+                    for (FileRun run : runs) backlog += run.results().size() + run.writerPending().get();
+                    return backlog;
+                },
+                () -> {
+                    int free = 0;
+                    for (ComputeLane lane : lanes) free += lane.slots().availablePermits();
+                    return slots - free;
+                },
+                AdaptiveRateController.Settings.from(cfg, slots)
+        ), "rate-control");
+        control.setDaemon(true);
+        control.start();
+        return control;
+    }
 
+    /** Line counters and backlogs are summed over {@code runs}, which directory mode fills as files start. */
+    private void registerMetrics(FactorialService factorialService, List<ComputeLane> lanes, List<FileRun> runs) {
+        metrics.counter("factorial_lines_read", "Input lines read.", () -> sum(runs, FileRun::linesRead))
+                .counter("factorial_lines_submitted", "Lines handed to a compute lane.", () -> sum(runs, FileRun::submitted))
+                .counter("factorial_lines_completed", "Lines whose result was published to the writer.", () -> sum(runs, FileRun::completed))
+                .counter("factorial_lines_errors", "Invalid, rejected or failed lines.", () -> sum(runs, FileRun::errorsCount))
+                .counter("factorial_cache_hits", "Factorials served from the table or cache.", factorialService::cacheFullHits)
+                .counter("factorial_cache_misses", "Factorials computed from scratch.", factorialService::cacheMisses)
+                .gauge("factorial_results_backlog", "Messages waiting in the results channel.", () -> {
+                    long backlog = 0;
+                    for (FileRun run : runs) backlog += run.results().size();
+                    return backlog;
+                })
+                .gauge("factorial_writer_pending", "Results held by the writer until earlier lines arrive.",
+                        () -> sum(runs, FileRun::writerPending))
+                .gauge("factorial_rate_limit", "Current rate limit in permits per second.", limiter::rate);
+        for (ComputeLane lane : lanes) {
+            String label = "lane=\"" + lane.name() + "\"";
+            metrics.gauge("factorial_lane_queued", label, "Tasks waiting in the lane's executor queue.", lane::queued)
+                    .gauge("factorial_lane_active", label, "Tasks running in the lane.", lane::active);
+        }
+    }
+
+    private MetricsHttpServer startMetricsHttp() {
+        try {
+            MetricsHttpServer http = MetricsHttpServer.start(metrics, cfg.metricsHttpHost, cfg.metricsHttpPort);
+            System.out.printf("Metrics at http://%s:%d/metrics%n", cfg.metricsHttpHost, http.port());
+            return http;
+        } catch (IOException e) {
+            System.err.println("Metrics endpoint unavailable: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Results channel and counters of one input file; single-file mode has exactly one. */
+    private record FileRun(BlockingQueue<Messages.Msg> results, AtomicInteger linesRead, AtomicInteger submitted,
+                           AtomicInteger completed, AtomicInteger errorsCount, AtomicInteger writerPending) {
+        static FileRun create(BlockingQueue<Messages.Msg> results) {
+            return new FileRun(results, new AtomicInteger(), new AtomicInteger(), new AtomicInteger(), new AtomicInteger(),
+                    new AtomicInteger());
+        }
+
+        void absorb(FileRun run) {
+            linesRead.addAndGet(run.linesRead().get());
+            submitted.addAndGet(run.submitted().get());
+            completed.addAndGet(run.completed().get());
+            errorsCount.addAndGet(run.errorsCount().get());
+        }
+    }
+}
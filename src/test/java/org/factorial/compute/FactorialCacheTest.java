@@ -0,0 +1,52 @@
+package org.factorial.compute;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FactorialCacheTest {
+
+    private static BigInteger bits(int n) {
+        return BigInteger.ONE.shiftLeft(n);
+    }
+
+    @Test
+    @DisplayName("Used bytes never exceed the budget; oversized values are not cached")
+    void staysWithinBudget() {
+        var cache = new FactorialCache(2_000);
+        for (int n = 0; n < 50; n++) cache.putIfAbsent(n, bits(4_000));
+        assertTrue(cache.usedBytes() <= 2_000, "used=" + cache.usedBytes());
+        assertTrue(cache.evictions() > 0);
+
+        cache.putIfAbsent(99, bits(100_000));
+        assertNull(cache.get(99));
+    }
+
+    @Test
+    @DisplayName("Frequently read entries survive eviction of colder ones")
+    void frequentEntriesSurvive() {
+        var cache = new FactorialCache(3 * (1_000 + 64));
+        cache.putIfAbsent(1, bits(8_000));
+        cache.putIfAbsent(2, bits(8_000));
+        for (int i = 0; i < 10; i++) cache.get(1);
+        cache.putIfAbsent(3, bits(8_000));
+        cache.putIfAbsent(4, bits(8_000));
+
+        assertNotNull(cache.get(1), "hot entry must be kept");
+        assertNull(cache.get(2), "cold entry must be evicted first");
+    }
+
+    @Test
+    @DisplayName("floor() returns the largest cached key not above n")
+    void floorFindsPredecessor() {
+        var cache = new FactorialCache(1 << 20);
+        cache.putIfAbsent(10, BigInteger.TEN);
+        cache.putIfAbsent(20, BigInteger.TWO);
+        assertEquals(10, cache.floor(19).getKey());
+        assertEquals(20, cache.floor(20).getKey());
+        assertNull(cache.floor(9));
+    }
+}
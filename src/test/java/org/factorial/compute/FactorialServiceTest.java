@@ -3,9 +3,11 @@ package org.factorial.compute;
 import org.factorial.config.AppConfig;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.math.BigInteger;
 import java.nio.file.Path;
+import java.util.Properties;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -82,4 +84,132 @@ class FactorialServiceTest {
         BigInteger fact100 = svc.factorial(100);
         assertTrue(fact100.toString().length() > 150, "100! should have more than 150 digits");
     }
+
+    @Test
+    @DisplayName("Product-tree and linear algorithms produce identical results")
+    void productTreeMatchesLinear() {
+        for (int n : new int[]{21, 33, 64, 65, 500, 1234}) {
+            assertEquals(FactorialService.linearFactorial(n), ProductTree.product(2, n), "n=" + n);
+        }
+    }
+
+    @Test
+    @DisplayName("Linear algorithm is selectable through factorial.algorithm")
+    void linearAlgorithmSelectable() {
+        Properties p = new Properties();
+        p.setProperty("factorial.algorithm", "linear");
+        var svc = new FactorialService(AppConfig.fromProperties(p));
+        assertEquals(new BigInteger("51090942171709440000"), svc.factorial(21));
+    }
+
+    @Test
+    @DisplayName("Values above factorial.prime.threshold use the prime-swing path with identical output")
+    void primeThresholdSwitchesAlgorithm() {
+        Properties p = new Properties();
+        p.setProperty("factorial.prime.threshold", "30");
+        var svc = new FactorialService(AppConfig.fromProperties(p));
+        assertEquals(FactorialService.linearFactorial(2_000), svc.factorial(2_000));
+    }
+
+    @Test
+    @DisplayName("Fork-join mode is used above factorial.parallel.min.n with identical output")
+    void parallelModeMatchesSequential() {
+        Properties p = new Properties();
+        p.setProperty("factorial.parallel.threads", "2");
+        p.setProperty("factorial.parallel.min.n", "3000");
+        p.setProperty("factorial.parallel.grain", "64");
+        var svc = new FactorialService(AppConfig.fromProperties(p));
+        assertEquals(ProductTree.product(2, 3_001), svc.factorial(3_001));
+    }
+
+    @Test
+    @DisplayName("close() shuts down the service's own fork-join pool")
+    void closeShutsDownParallelPool() {
+        Properties p = new Properties();
+        p.setProperty("factorial.parallel.threads", "2");
+        p.setProperty("factorial.parallel.min.n", "3000");
+        var svc = new FactorialService(AppConfig.fromProperties(p));
+        svc.factorial(3_001);
+        assertFalse(svc.parallelPoolShutdown());
+
+        svc.close();
+        assertTrue(svc.parallelPoolShutdown());
+    }
+
+    @Test
+    @DisplayName("n! extends the nearest cached predecessor and counts full/partial hits")
+    void extendsFromNearestCachedPredecessor() {
+        var svc = new FactorialService(cfg());
+        svc.factorial(4_000);
+        long partial = svc.cachePartialHits();
+        long full = svc.cacheFullHits();
+
+        assertEquals(ProductTree.product(2, 4_010), svc.factorial(4_010));
+        assertEquals(partial + 1, svc.cachePartialHits());
+
+        svc.factorial(4_010);
+        assertEquals(full + 1, svc.cacheFullHits());
+    }
+
+    @Test
+    @DisplayName("factorial.cache.max.bytes bounds the cache and counts evictions")
+    void boundedCacheEvicts() {
+        Properties p = new Properties();
+        p.setProperty("factorial.cache.max.bytes", "20000");
+        var svc = new FactorialService(AppConfig.fromProperties(p));
+        for (int n = 5_000; n < 5_020; n++) svc.factorial(n);
+        assertTrue(svc.cacheBytes() <= 20_000);
+        assertTrue(svc.cacheEvictions() > 0);
+    }
+
+    @Test
+    @DisplayName("A second service on the same factorial.store.path loads results instead of computing")
+    void persistentStoreSharedAcrossServices(@TempDir Path tmp) {
+        Properties p = new Properties();
+        p.setProperty("factorial.store.path", tmp.resolve("store.bin").toString());
+        p.setProperty("factorial.store.min.n", "1000");
+        BigInteger expected;
+        try (var first = new FactorialService(AppConfig.fromProperties(p))) {
+            expected = first.factorial(2_500);
+        }
+        try (var second = new FactorialService(AppConfig.fromProperties(p))) {
+            assertEquals(expected, second.factorial(2_500));
+            assertEquals(1, second.storeHits());
+            assertEquals(0, second.cacheMisses());
+        }
+    }
+
+    @Test
+    @DisplayName("Concurrent requests for one uncached n compute it once; the rest coalesce or hit the cache")
+    void concurrentDuplicatesCoalesce() throws Exception {
+        var svc = new FactorialService(cfg());
+        int threads = 8;
+        var start = new java.util.concurrent.CyclicBarrier(threads);
+        var pool = java.util.concurrent.Executors.newFixedThreadPool(threads);
+        try {
+            var futures = new java.util.ArrayList<java.util.concurrent.Future<BigInteger>>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return svc.factorialAsync(60_000).join();
+                }));
+            }
+            BigInteger expected = ProductTree.product(2, 60_000);
+            for (var f : futures) assertEquals(expected, f.get());
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(1, svc.cacheMisses());
+        assertEquals(threads - 1, svc.coalescedRequests() + svc.cacheFullHits());
+        assertTrue(svc.coalescedRequests() > 0, "some duplicates should arrive while n! is computing");
+    }
+
+    @Test
+    @DisplayName("factorialAsync: negative n gives a failed future instead of throwing")
+    void asyncNegativeFails() {
+        var svc = new FactorialService(cfg());
+        var f = svc.factorialAsync(-1);
+        assertTrue(f.isCompletedExceptionally());
+        assertEquals(BigInteger.valueOf(120), svc.factorialAsync(5).join());
+    }
 }
@@ -0,0 +1,119 @@
+package org.factorial.compute;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FactorialStoreTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    @DisplayName("Appended values are readable after reopening the store")
+    void persistsAcrossReopen() throws Exception {
+        Path file = tmp.resolve("store.bin");
+        BigInteger f = ProductTree.product(2, 3_000);
+        try (var store = FactorialStore.open(file)) {
+            assertNull(store.get(3_000));
+            store.appendAsync(3_000, f);
+        }
+        try (var store = FactorialStore.open(file)) {
+            assertEquals(f, store.get(3_000));
+            assertEquals(1, store.size());
+        }
+    }
+
+    @Test
+    @DisplayName("A second open store sees records appended by the first one")
+    void concurrentReadersSeeAppends() throws Exception {
+        Path file = tmp.resolve("shared.bin");
+        try (var reader = FactorialStore.open(file)) {
+            try (var writer = FactorialStore.open(file)) {
+                writer.appendAsync(100, ProductTree.product(2, 100));
+                writer.appendAsync(100, ProductTree.product(2, 100));
+            }
+            assertEquals(ProductTree.product(2, 100), reader.get(100));
+            assertEquals(1, reader.size(), "duplicate appends must be dropped");
+        }
+    }
+
+    @Test
+    @DisplayName("Files that are not factorial stores are rejected")
+    void rejectsForeignFile() throws Exception {
+        Path file = tmp.resolve("foreign.bin");
+        Files.writeString(file, "hello world");
+        assertThrows(java.io.IOException.class, () -> FactorialStore.open(file));
+    }
+
+    @Test
+    @DisplayName("A record torn by a killed writer is cut off by the next append instead of shadowing it")
+    void tornRecordIsTruncated() throws Exception {
+        Path file = tmp.resolve("torn.bin");
+        try (var store = FactorialStore.open(file)) {
+            store.appendAsync(100, ProductTree.product(2, 100));
+        }
+        long good = Files.size(file);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer torn = ByteBuffer.allocate(12 + 10).putInt(200).putInt(1_000).putInt(0).flip();
+            ch.write(torn, good);
+        }
+        BigInteger f = ProductTree.product(2, 3_000);
+        try (var store = FactorialStore.open(file)) {
+            assertNull(store.get(200));
+            store.appendAsync(3_000, f);
+        }
+        try (var store = FactorialStore.open(file)) {
+            assertEquals(f, store.get(3_000));
+            assertEquals(ProductTree.product(2, 100), store.get(100));
+            assertNull(store.get(200));
+            assertEquals(2, store.size());
+        }
+        assertEquals(good + 12 + f.toByteArray().length, Files.size(file));
+    }
+
+    @Test
+    @DisplayName("A record whose bytes do not match its checksum is not indexed")
+    void corruptRecordRejected() throws Exception {
+        Path file = tmp.resolve("corrupt.bin");
+        try (var store = FactorialStore.open(file)) {
+            store.appendAsync(100, ProductTree.product(2, 100));
+        }
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            long last = ch.size() - 1;
+            ch.read(b, last);
+            ch.write(b.put(0, (byte) (b.get(0) ^ 1)).rewind(), last);
+        }
+        try (var store = FactorialStore.open(file)) {
+            assertNull(store.get(100));
+            assertEquals(0, store.size());
+        }
+    }
+
+    @Test
+    @DisplayName("Completed segments are mapped once; records in them and in the open tail are both readable")
+    void segmentsMappedOnceWhenComplete() throws Exception {
+        Path file = tmp.resolve("segments.bin");
+        try (var store = FactorialStore.open(file, 4_096)) {
+            for (int n = 300; n < 340; n++) store.appendAsync(n, ProductTree.product(2, n));
+        }
+        try (var store = FactorialStore.open(file, 4_096)) {
+            int mapped = store.mappedSegments();
+            assertTrue(mapped > 1, "40 records of ~300 bytes span several 4 KiB segments");
+            for (int n = 300; n < 340; n++) assertEquals(ProductTree.product(2, n), store.get(n));
+            store.appendAsync(340, ProductTree.product(2, 340));
+            store.close();
+            assertEquals(mapped, store.mappedSegments(), "a small append extends the tail, no remap");
+        }
+    }
+}
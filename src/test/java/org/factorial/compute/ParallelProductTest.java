@@ -0,0 +1,25 @@
+package org.factorial.compute;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelProductTest {
+
+    @Test
+    @DisplayName("Fork-join product matches the sequential product tree for any grain")
+    void matchesSequentialProduct() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            for (int grain : new int[]{1, 64, 1_000_000}) {
+                assertEquals(ProductTree.product(2, 20_000), ParallelProduct.product(pool, 2, 20_000, grain),
+                        "grain=" + grain);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
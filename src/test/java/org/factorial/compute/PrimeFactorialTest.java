@@ -0,0 +1,28 @@
+package org.factorial.compute;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrimeFactorialTest {
+
+    @Test
+    @DisplayName("Sieve returns the primes up to and including n")
+    void sieveListsPrimes() {
+        assertArrayEquals(new int[]{2, 3, 5, 7, 11, 13}, PrimeFactorial.sieve(13));
+        assertEquals(0, PrimeFactorial.sieve(1).length);
+    }
+
+    @Test
+    @DisplayName("Prime-swing factorial matches the product tree")
+    void matchesProductTree() {
+        assertEquals(BigInteger.ONE, PrimeFactorial.factorial(0));
+        assertEquals(BigInteger.ONE, PrimeFactorial.factorial(1));
+        for (int n : new int[]{2, 3, 4, 10, 31, 32, 97, 1000, 12_345}) {
+            assertEquals(ProductTree.product(2, n), PrimeFactorial.factorial(n), "n=" + n);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package org.factorial.compute;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductTreeTest {
+
+    @Test
+    @DisplayName("Empty and single-element ranges")
+    void emptyAndSingleRanges() {
+        assertEquals(BigInteger.ONE, ProductTree.product(5, 4));
+        assertEquals(BigInteger.valueOf(7), ProductTree.product(7, 7));
+    }
+
+    @Test
+    @DisplayName("Range product equals the running product, including long-overflow leaves")
+    void matchesRunningProduct() {
+        long lo = 3_000_000_000L, hi = lo + 100;
+        BigInteger expected = BigInteger.ONE;
+        for (long i = lo; i <= hi; i++) expected = expected.multiply(BigInteger.valueOf(i));
+        assertEquals(expected, ProductTree.product(lo, hi));
+    }
+}
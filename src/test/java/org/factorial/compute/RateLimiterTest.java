@@ -3,7 +3,11 @@ package org.factorial.compute;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class RateLimiterTest {
@@ -86,4 +90,75 @@ class RateLimiterTest {
             rl.shutdown();
         });
     }
+
+    @Test
+    @DisplayName("Burst: up to 'burst' permits are immediate, the next one waits one interval")
+    void burstAllowsImmediatePermits() {
+        var rl = new RateLimiter(10, 5, 0);
+        long t0 = System.nanoTime();
+        rl.acquire(5);
+        long burstMs = (System.nanoTime() - t0) / 1_000_000;
+        assertTrue(burstMs < 20, "burst should be immediate, got " + burstMs + "ms");
+
+        t0 = System.nanoTime();
+        rl.acquire();
+        long nextMs = (System.nanoTime() - t0) / 1_000_000;
+        assertTrue(nextMs >= 80 && nextMs <= 250, "next permit should wait ~100ms, got " + nextMs + "ms");
+    }
+
+    @Test
+    @DisplayName("acquire(k) waits for k intervals of capacity")
+    void acquireManyWaitsProportionally() {
+        var rl = new RateLimiter(20);
+        rl.acquire();
+        long t0 = System.nanoTime();
+        rl.acquire(4);
+        long elapsedMs = (System.nanoTime() - t0) / 1_000_000;
+        assertTrue(elapsedMs >= 160 && elapsedMs <= 350, "4 permits at 20/s should take ~200ms, got " + elapsedMs + "ms");
+    }
+
+    @Test
+    @DisplayName("tryAcquire fails without consuming when the wait exceeds the timeout")
+    void tryAcquireRespectsTimeout() {
+        var rl = new RateLimiter(10);
+        assertTrue(rl.tryAcquire(1, 0, TimeUnit.MILLISECONDS));
+        assertFalse(rl.tryAcquire(1, 10, TimeUnit.MILLISECONDS));
+        assertTrue(rl.tryAcquire(1, 500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    @DisplayName("permitsForCost: one per line by default, cost / costPerPermit rounded up when weighted")
+    void permitsForCost() {
+        assertEquals(1, new RateLimiter(10).permitsForCost(1_000_000));
+        var weighted = new RateLimiter(10, 1, 100);
+        assertEquals(1, weighted.permitsForCost(1));
+        assertEquals(1, weighted.permitsForCost(100));
+        assertEquals(2, weighted.permitsForCost(101));
+        assertEquals(Integer.MAX_VALUE, weighted.permitsForCost(Long.MAX_VALUE));
+    }
+
+    @Test
+    @DisplayName("setRate changes the spacing of permits booked afterwards")
+    void setRateChangesSpacing() {
+        var rl = new RateLimiter(1);
+        rl.acquire();
+        rl.setRate(50);
+        assertEquals(50, rl.rate());
+        rl.acquire();
+        long t0 = System.nanoTime();
+        rl.acquire(5);
+        long elapsedMs = (System.nanoTime() - t0) / 1_000_000;
+        assertTrue(elapsedMs >= 80 && elapsedMs <= 250, "5 permits at 50/s should take ~100ms, got " + elapsedMs + "ms");
+    }
+
+    @Test
+    @DisplayName("throttled counts only the reservations that had to wait")
+    void throttledCountsWaits() {
+        var rl = new RateLimiter(10, 2, 0);
+        assertEquals(0, rl.reserve(1));
+        assertEquals(0, rl.reserve(1));
+        assertEquals(0, rl.throttled());
+        assertTrue(rl.reserve(1) > 0);
+        assertEquals(1, rl.throttled());
+    }
 }
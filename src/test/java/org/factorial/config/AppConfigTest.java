@@ -1,5 +1,6 @@
 package org.factorial.config;
 
+import org.factorial.io.ReaderTask;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -168,4 +169,199 @@ class AppConfigTest {
         assertEquals(100000, high.factorialSmallMax);
         assertEquals(60000,  high.progressIntervalMs);
     }
+
+    @Test
+    @DisplayName("factorial.algorithm accepts known values and falls back to tree otherwise")
+    void factorialAlgorithm_parsedAndValidated() throws IOException {
+        Path props = tmp.resolve("cfg.properties");
+        Files.writeString(props, "factorial.algorithm= LINEAR ");
+        assertEquals("linear", AppConfig.loadOrDefault(props).factorialAlgorithm);
+
+        Files.writeString(props, "factorial.algorithm=bogus");
+        assertEquals("tree", AppConfig.loadOrDefault(props).factorialAlgorithm);
+    }
+
+    @Test
+    @DisplayName("input.follow.* parsed: mode validated, idle timeout kept")
+    void inputFollow_parsed() throws IOException {
+        Path props = tmp.resolve("cfg.properties");
+        Files.writeString(props, "input.follow.mode=poll\ninput.follow.idle.ms=500");
+        AppConfig cfg = AppConfig.loadOrDefault(props);
+        assertEquals("poll", cfg.inputFollowMode);
+        assertEquals(500, cfg.inputFollowIdleMs);
+
+        Files.writeString(props, "input.follow.mode=inotify");
+        assertEquals("watch", AppConfig.loadOrDefault(props).inputFollowMode);
+    }
+
+    @Test
+    @DisplayName("Directory mode keys: off by default, dirs and parallelism parsed")
+    void inputDir_parsed() throws IOException {
+        Path props = tmp.resolve("cfg.properties");
+        Files.writeString(props, "");
+        AppConfig cfg = AppConfig.loadOrDefault(props);
+        assertNull(cfg.inputDir);
+        assertEquals("*", cfg.inputDirGlob);
+        assertEquals(4, cfg.inputDirParallel);
+
+        Files.writeString(props, "input.dir=inbox\ninput.dir.glob=*.txt\ninput.dir.parallel=16\noutput.dir=done\nerrors.dir=bad");
+        cfg = AppConfig.loadOrDefault(props);
+        assertEquals(Path.of("inbox"), cfg.inputDir);
+        assertEquals("*.txt", cfg.inputDirGlob);
+        assertEquals(16, cfg.inputDirParallel);
+        assertEquals(Path.of("done"), cfg.outputDir);
+        assertEquals(Path.of("bad"), cfg.errorsDir);
+    }
+
+    @Test
+    @DisplayName("input.shard* parsed: 0 kept (one per CPU), shard size bounded")
+    void inputShards_parsed() throws IOException {
+        Path props = tmp.resolve("cfg.properties");
+        Files.writeString(props, "input.shards=0\ninput.shard.bytes=1048576");
+        AppConfig cfg = AppConfig.loadOrDefault(props);
+        assertEquals(0, cfg.inputShards);
+        assertEquals(1L << 20, cfg.inputShardBytes);
+        assertEquals(Runtime.getRuntime().availableProcessors(), ReaderTask.Options.from(cfg).readerShards());
+
+        Files.writeString(props, "input.shards=-2\ninput.shard.bytes=10");
+        cfg = AppConfig.loadOrDefault(props);
+        assertEquals(1, cfg.inputShards);
+        assertEquals(256L << 10, cfg.inputShardBytes);
+    }
+
+    @Test
+    @DisplayName("batch.* parsed with defaults and bounds")
+    void batchSettings_parsed() throws IOException {
+        Path props = tmp.resolve("cfg.properties");
+        Files.writeString(props, "batch.max.lines=16\nbatch.window.ms=0\nbatch.max.cost=1000");
+        AppConfig cfg = AppConfig.loadOrDefault(props);
+        assertEquals(16, cfg.batchMaxLines);
+        assertEquals(0, cfg.batchWindowMs);
+        assertEquals(1000L, cfg.batchMaxCost);
+
+        Files.writeString(props, "batch.max.lines=0");
+        assertEquals(1, AppConfig.loadOrDefault(props).batchMaxLines, "batching is off by default");
+    }
+
+    @Test
+    @DisplayName("executor.mode accepts platform/virtual; compute threads default to 0 (= cores)")
+    void executorMode_parsed() throws IOException {
+        Path props = tmp.resolve("cfg.properties");
+        Files.writeString(props, "executor.mode=Virtual\nexecutor.compute.threads=3");
+        AppConfig cfg = AppConfig.loadOrDefault(props);
+        assertEquals("virtual", cfg.executorMode);
+        assertEquals(3, cfg.executorComputeThreads);
+
+        Files.writeString(props, "executor.mode=green");
+        cfg = AppConfig.loadOrDefault(props);
+        assertEquals("platform", cfg.executorMode);
+        assertEquals(0, cfg.executorComputeThreads);
+    }
+
+    @Test
+    @DisplayName("output.render.in.workers parsed; the writer renders by default")
+    void renderInWorkers_parsed() throws IOException {
+        Path props = tmp.resolve("cfg.properties");
+        Files.writeString(props, "output.render.in.workers=true");
+        assertTrue(AppConfig.loadOrDefault(props).renderInWorkers);
+
+        Files.writeString(props, "");
+        assertFalse(AppConfig.loadOrDefault(props).renderInWorkers);
+    }
+
+    @Test
+    @DisplayName("lane.large.* parsed; the large lane is off by default")
+    void largeLaneSettings_parsed() throws IOException {
+        Path props = tmp.resolve("cfg.properties");
+        Files.writeString(props, "lane.large.threads=2\nlane.large.min.n=1000\nlane.large.queue=8");
+        AppConfig cfg = AppConfig.loadOrDefault(props);
+        assertEquals(2, cfg.laneLargeThreads);
+        assertEquals(1000, cfg.laneLargeMinN);
+        assertEquals(8, cfg.laneLargeQueue);
+
+        Files.writeString(props, "");
+        assertEquals(0, AppConfig.loadOrDefault(props).laneLargeThreads);
+    }
+
+    @Test
+    @DisplayName("rate.mode accepts worker/dispatch; workers wait for permits by default")
+    void rateMode_parsed() throws IOException {
+        Path props = tmp.resolve("cfg.properties");
+        Files.writeString(props, "rate.mode=Dispatch");
+        assertEquals("dispatch", AppConfig.loadOrDefault(props).rateMode);
+
+        Files.writeString(props, "rate.mode=timer");
+        assertEquals("worker", AppConfig.loadOrDefault(props).rateMode);
+    }
+
+    @Test
+    @DisplayName("rate.burst and rate.cost.per.permit parsed; defaults keep one permit per line")
+    void rateBucketSettings_parsed() throws IOException {
+        Path props = tmp.resolve("cfg.properties");
+        Files.writeString(props, "rate.burst=50\nrate.cost.per.permit=4096");
+        AppConfig cfg = AppConfig.loadOrDefault(props);
+        assertEquals(50, cfg.rateBurst);
+        assertEquals(4096L, cfg.rateCostPerPermit);
+
+        Files.writeString(props, "rate.burst=0");
+        cfg = AppConfig.loadOrDefault(props);
+        assertEquals(1, cfg.rateBurst);
+        assertEquals(0L, cfg.rateCostPerPermit);
+    }
+
+    @Test
+    @DisplayName("rate.adaptive.* parsed; max never below min; off by default")
+    void adaptiveRateSettings_parsed() throws IOException {
+        Path props = tmp.resolve("cfg.properties");
+        Files.writeString(props, "rate.adaptive=true\nrate.adaptive.min=200\nrate.adaptive.max=100\n"
+                + "rate.adaptive.step=25\nrate.adaptive.decrease.percent=30\nrate.adaptive.interval.ms=250\n"
+                + "rate.adaptive.backlog.high=500\nrate.adaptive.lag.high=2000");
+        AppConfig cfg = AppConfig.loadOrDefault(props);
+        assertTrue(cfg.rateAdaptive);
+        assertEquals(200, cfg.rateAdaptiveMin);
+        assertEquals(200, cfg.rateAdaptiveMax);
+        assertEquals(25, cfg.rateAdaptiveStep);
+        assertEquals(30, cfg.rateAdaptiveDecreasePercent);
+        assertEquals(250, cfg.rateAdaptiveIntervalMs);
+        assertEquals(500, cfg.rateAdaptiveBacklogHigh);
+        assertEquals(2000, cfg.rateAdaptiveLagHigh);
+
+        Files.writeString(props, "");
+        assertFalse(AppConfig.loadOrDefault(props).rateAdaptive);
+        assertEquals(0, AppConfig.loadOrDefault(props).rateAdaptiveLagHigh, "0 = derived from the lane slots");
+    }
+
+    @Test
+    @DisplayName("results.channel and ring settings parsed; linked queue by default")
+    void resultsChannel_parsed() throws IOException {
+        Path props = tmp.resolve("cfg.properties");
+        Files.writeString(props, "results.channel=ring\nresults.ring.capacity=1024\nresults.ring.wait=yield");
+        AppConfig cfg = AppConfig.loadOrDefault(props);
+        assertEquals("ring", cfg.resultsChannel);
+        assertEquals(1024, cfg.resultsRingCapacity);
+        assertEquals("yield", cfg.resultsRingWait);
+
+        Files.writeString(props, "results.channel=disruptor\nresults.ring.wait=sleep");
+        cfg = AppConfig.loadOrDefault(props);
+        assertEquals("linked", cfg.resultsChannel);
+        assertEquals(65_536, cfg.resultsRingCapacity);
+        assertEquals("park", cfg.resultsRingWait);
+    }
+
+    @Test
+    @DisplayName("metrics.* parsed; JMX on and HTTP endpoint off by default")
+    void metricsSettings_parsed() throws IOException {
+        Path props = tmp.resolve("cfg.properties");
+        Files.writeString(props, "metrics.jmx=false\nmetrics.http.host=0.0.0.0\nmetrics.http.port=9400");
+        AppConfig cfg = AppConfig.loadOrDefault(props);
+        assertFalse(cfg.metricsJmx);
+        assertEquals("0.0.0.0", cfg.metricsHttpHost);
+        assertEquals(9400, cfg.metricsHttpPort);
+
+        Files.writeString(props, "metrics.http.port=70000");
+        cfg = AppConfig.loadOrDefault(props);
+        assertTrue(cfg.metricsJmx);
+        assertEquals("127.0.0.1", cfg.metricsHttpHost);
+        assertEquals(0, cfg.metricsHttpPort);
+    }
 }
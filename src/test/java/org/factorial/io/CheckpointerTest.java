@@ -0,0 +1,119 @@
+package org.factorial.io;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Checkpointer: reader marks become stable once the writer has flushed past them")
+class CheckpointerTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    @DisplayName("A mark is stable only after the writer reached its line and flushed that far")
+    void markBecomesStableAfterFlush() throws Exception {
+        Path in = tmp.resolve("in.txt");
+        Path err = tmp.resolve("err.txt");
+        Files.writeString(err, "1234567");
+        var cp = new Checkpointer(tmp.resolve("ckpt"), in, err, 0, null);
+        cp.mark(3, 30);
+
+        cp.beforeWrite(2, 10, 0);
+        cp.flushed(20);
+        assertNull(cp.stable(), "line 3 not written yet");
+
+        Files.writeString(err, "12345678");
+        cp.beforeWrite(3, 25, 1);
+        cp.flushed(24);
+        assertNull(cp.stable(), "output not flushed up to line 3 yet");
+        cp.flushed(40);
+        assertEquals(new Checkpointer.State(in.toAbsolutePath().normalize().toString(), 3, 30, 25, 8, 1), cp.stable(),
+                "errors offset and count are taken when the writer reaches the mark");
+    }
+
+    @Test
+    @DisplayName("Marks the writer has already passed are dropped; the latest reached one wins")
+    void staleMarksDropped() {
+        var cp = new Checkpointer(tmp.resolve("ckpt"), tmp.resolve("in.txt"), null, 0, null);
+        cp.mark(1, 10);
+        cp.mark(5, 50);
+        cp.mark(9, 90);
+        cp.beforeWrite(6, 60, 0);
+        cp.flushed(100);
+        assertNull(cp.stable());
+        cp.beforeWrite(9, 95, 0);
+        cp.flushed(100);
+        assertEquals(9, cp.stable().lineIndex());
+        assertEquals(95, cp.stable().outputOffset());
+    }
+
+    @Test
+    @DisplayName("save/load round trip; load rejects a checkpoint whose files are shorter")
+    void saveAndLoad() throws Exception {
+        Path in = tmp.resolve("in.txt");
+        Path out = tmp.resolve("out.txt");
+        Path err = tmp.resolve("err.txt");
+        Path ckpt = tmp.resolve("run.ckpt");
+        Files.writeString(in, "1\n2\n3\n");
+        Files.writeString(out, "1 = 1\n2 = 2\n");
+        Files.writeString(err, "");
+
+        var cp = new Checkpointer(ckpt, in, err, 0, null);
+        cp.mark(2, 4);
+        cp.beforeWrite(2, 12, 0);
+        cp.flushed(12);
+        cp.save();
+        assertFalse(Files.exists(tmp.resolve("run.ckpt.tmp")));
+
+        Checkpointer.State loaded = Checkpointer.load(ckpt, in, out, err);
+        assertEquals(cp.stable(), loaded);
+
+        Files.writeString(out, "1 = 1\n");
+        assertNull(Checkpointer.load(ckpt, in, out, err));
+        assertNull(Checkpointer.load(ckpt, tmp.resolve("other.txt"), out, err));
+
+        cp.delete();
+        assertFalse(Files.exists(ckpt));
+        assertNull(Checkpointer.load(ckpt, in, out, err));
+    }
+
+    @Test
+    @DisplayName("load rejects a checkpoint whose input was rewritten or replaced, even at the same size")
+    void rejectsChangedInput() throws Exception {
+        Path in = tmp.resolve("in.txt");
+        Path out = tmp.resolve("out.txt");
+        Path ckpt = tmp.resolve("run.ckpt");
+        Files.writeString(in, "10\n20\n30\n");
+        Files.writeString(out, "10 = 3628800\n");
+
+        var cp = new Checkpointer(ckpt, in, null, 0, null);
+        cp.mark(1, 3);
+        cp.beforeWrite(1, out.toFile().length(), 0);
+        cp.flushed(out.toFile().length());
+        cp.save();
+        assertNotNull(Checkpointer.load(ckpt, in, out, null));
+
+        Files.writeString(in, "11\n20\n30\n");
+        assertNull(Checkpointer.load(ckpt, in, out, null), "same size, different bytes before the offset");
+
+        Path other = tmp.resolve("other.txt");
+        Files.writeString(other, "10\n20\n30\n");
+        Files.move(other, in, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        assertNull(Checkpointer.load(ckpt, in, out, null), "same bytes, but another file");
+    }
+
+    @Test
+    @DisplayName("truncate cuts a file back to the checkpointed length")
+    void truncate() throws Exception {
+        Path out = tmp.resolve("out.txt");
+        Files.writeString(out, "1 = 1\n2 = 2\npartial");
+        Checkpointer.truncate(out, 12);
+        assertEquals("1 = 1\n2 = 2\n", Files.readString(out));
+    }
+}
@@ -0,0 +1,122 @@
+package org.factorial.io;
+
+import org.factorial.monitor.LatencyHistogram;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ComputeLane: slot accounting, queue depth and latency")
+class ComputeLaneTest {
+
+    @Test
+    @DisplayName("A task holds its slot until done and its latency is recorded")
+    void submit_holdsSlotAndRecordsLatency() throws Exception {
+        var exec = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(4));
+        var lane = ComputeLane.of("test", exec, new Semaphore(3));
+        CountDownLatch release = new CountDownLatch(1);
+
+        assertTrue(lane.submit(() -> awaitQuietly(release)));
+        assertTrue(lane.submit(() -> { }));
+        assertEquals(1, lane.slots().availablePermits());
+        assertEquals(1, lane.queued());
+
+        release.countDown();
+        exec.shutdown();
+        assertTrue(exec.awaitTermination(3, TimeUnit.SECONDS));
+        assertEquals(3, lane.slots().availablePermits());
+        assertEquals(2, lane.latency().count());
+    }
+
+    @Test
+    @DisplayName("A rejected task returns false and gives its slot back")
+    void submit_rejected_releasesSlot() throws Exception {
+        var exec = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1));
+        exec.shutdown();
+        var lane = ComputeLane.of("closed", exec, new Semaphore(1));
+
+        assertFalse(lane.submit(() -> { }));
+        assertEquals(1, lane.slots().availablePermits());
+        assertEquals(0, lane.latency().count());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try { latch.await(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
+    @Test
+    @DisplayName("submitAsync keeps the slot until the returned stage completes")
+    void submitAsync_holdsSlotUntilStageCompletes() throws Exception {
+        var exec = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(4));
+        var lane = ComputeLane.of("async", exec, new Semaphore(1));
+        var pending = new java.util.concurrent.CompletableFuture<Void>();
+
+        assertTrue(lane.submitAsync(() -> pending));
+        exec.shutdown();
+        assertTrue(exec.awaitTermination(3, TimeUnit.SECONDS));
+        assertEquals(0, lane.slots().availablePermits());
+
+        pending.complete(null);
+        assertEquals(1, lane.slots().availablePermits());
+        assertEquals(1, lane.latency().count());
+    }
+
+    @Test
+    @DisplayName("submitDelayed holds the slot at once but starts the task only when due")
+    void submitDelayed_startsWhenDue() throws Exception {
+        var exec = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(4));
+        var timer = java.util.concurrent.Executors.newSingleThreadScheduledExecutor();
+        var lane = ComputeLane.of("paced", exec, new Semaphore(1));
+        var startedAt = new java.util.concurrent.atomic.AtomicLong();
+        long t0 = System.nanoTime();
+
+        lane.submitDelayed(() -> {
+            startedAt.set(System.nanoTime());
+            return java.util.concurrent.CompletableFuture.completedFuture(null);
+        }, () -> TimeUnit.MILLISECONDS.toNanos(100), timer, () -> fail("not rejected"));
+        assertEquals(0, lane.slots().availablePermits());
+
+        assertTrue(lane.slots().tryAcquire(2, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(startedAt.get() - t0) >= 90);
+        timer.shutdown();
+        exec.shutdown();
+    }
+
+    @Test
+    @DisplayName("submitDelayed reports a task the executor refuses when it comes due")
+    void submitDelayed_rejectedCallback() throws Exception {
+        var exec = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1));
+        exec.shutdown();
+        var lane = ComputeLane.of("paced", exec, new Semaphore(1));
+        var rejected = new CountDownLatch(1);
+
+        lane.submitDelayed(() -> java.util.concurrent.CompletableFuture.completedFuture(null),
+                () -> 0L, null, rejected::countDown);
+        assertEquals(0, rejected.getCount());
+        assertEquals(1, lane.slots().availablePermits());
+    }
+
+    @Test
+    @DisplayName("Queue wait is recorded once per started task, into the histogram the lane was given")
+    void recordsQueueWait() throws Exception {
+        var exec = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(4));
+        var queueWait = new LatencyHistogram();
+        var lane = ComputeLane.of("test", exec, new Semaphore(2), queueWait);
+        CountDownLatch release = new CountDownLatch(1);
+
+        assertTrue(lane.submit(() -> awaitQuietly(release)));
+        assertTrue(lane.submit(() -> { }));
+        Thread.sleep(30);
+        release.countDown();
+        exec.shutdown();
+        assertTrue(exec.awaitTermination(3, TimeUnit.SECONDS));
+        assertEquals(2, queueWait.count());
+        assertTrue(queueWait.maxNanos() >= TimeUnit.MILLISECONDS.toNanos(25), "second task queued behind the first");
+    }
+}
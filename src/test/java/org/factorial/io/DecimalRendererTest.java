@@ -0,0 +1,44 @@
+package org.factorial.io;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("DecimalRenderer: divide-and-conquer output matches BigInteger.toString()")
+class DecimalRendererTest {
+
+    private static String render(BigInteger v) throws Exception {
+        var out = new ByteArrayOutputStream();
+        DecimalRenderer.write(v, out);
+        return out.toString(StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    @DisplayName("Small and boundary values")
+    void smallAndBoundaryValues() throws Exception {
+        assertEquals("0", render(BigInteger.ZERO));
+        assertEquals("-42", render(BigInteger.valueOf(-42)));
+        BigInteger p = BigInteger.TEN.pow(4096);
+        for (BigInteger v : new BigInteger[]{p, p.subtract(BigInteger.ONE), p.add(BigInteger.ONE), p.multiply(p)}) {
+            assertEquals(v.toString(), render(v));
+        }
+    }
+
+    @Test
+    @DisplayName("Random large values, including internal zero runs")
+    void randomLargeValues() throws Exception {
+        Random rnd = new Random(42);
+        for (int bits : new int[]{20_000, 65_537, 400_000}) {
+            BigInteger v = new BigInteger(bits, rnd);
+            assertEquals(v.toString(), render(v), "bits=" + bits);
+            BigInteger sparse = BigInteger.TEN.pow(bits / 4).add(BigInteger.valueOf(7));
+            assertEquals(sparse.toString(), new String(DecimalRenderer.toAscii(sparse), StandardCharsets.US_ASCII));
+        }
+    }
+}
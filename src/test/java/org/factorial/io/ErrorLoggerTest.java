@@ -141,4 +141,21 @@ class ErrorLoggerTest {
             }
         });
     }
+
+    @Test
+    @DisplayName("resumeAt keeps the checkpointed prefix minus entries for re-read lines and a torn last entry")
+    void resumeAtDropsLaterLines() throws Exception {
+        Path file = tmp.resolve("errors.txt");
+        String nl = System.lineSeparator();
+        String kept = "Line 2: [x] -> not a valid integer (x)" + nl
+                + "I/O error in reader: boom" + nl;
+        String ahead = "Line 9: [y] -> not a valid integer (y)" + nl
+                + "Factorial for line 7 failed: java.lang.ArithmeticException" + nl;
+        String later = "Line 5: [z] -> empty/whitespace line" + nl;
+        Files.writeString(file, kept + "Line 4: [w] -> empty" + nl + ahead + "Line 6: [to" + later);
+        long length = (kept + "Line 4: [w] -> empty" + nl + ahead + "Line 6: [to").length();
+
+        ErrorLogger.resumeAt(file, length, 4);
+        assertEquals(kept + "Line 4: [w] -> empty" + nl, Files.readString(file));
+    }
 }
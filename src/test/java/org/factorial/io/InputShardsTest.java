@@ -0,0 +1,96 @@
+package org.factorial.io;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("InputShards: line-aligned ranges that scan to the same lines as one pass")
+class InputShardsTest {
+
+    @TempDir
+    Path tmp;
+
+    private static List<String> scan(FileChannel ch, long start, long end, int firstIndex) throws Exception {
+        List<String> out = new ArrayList<>();
+        var scanner = new LineScanner(ch, 0, 0, 64);
+        scanner.reset(start, firstIndex, end);
+        scanner.scan(new LineScanner.Sink() {
+            @Override public void parsed(int index, int value) { out.add(index + ":" + value); }
+            @Override public void raw(int index, String line) { out.add(index + ":" + line); }
+        });
+        assertEquals(end, scanner.position());
+        return out;
+    }
+
+    private static String randomLines(long seed) {
+        Random rnd = new Random(seed);
+        String[] terminators = {"\n", "\r\n", "\r"};
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 400; i++) {
+            if (rnd.nextInt(10) == 0) sb.append("x".repeat(rnd.nextInt(200)));
+            else sb.append(rnd.nextInt(100_000));
+            sb.append(terminators[rnd.nextInt(terminators.length)]);
+            if (rnd.nextInt(20) == 0) sb.append(terminators[rnd.nextInt(terminators.length)]);
+        }
+        return sb.append("12").toString();
+    }
+
+    @Test
+    @DisplayName("Shards cover the complete lines; scanning them with prefix-sum indexes equals a single scan")
+    void shardsMatchSingleScan() throws Exception {
+        for (long seed = 1; seed <= 5; seed++) {
+            Path file = tmp.resolve("in-" + seed + ".txt");
+            Files.write(file, randomLines(seed).getBytes(StandardCharsets.ISO_8859_1));
+            try (var ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                long end = InputShards.completeEnd(ch, ch.size());
+                assertEquals(ch.size() - 2, end, "the unterminated tail is left for the single reader");
+                List<String> expected = scan(ch, 0, end, 0);
+                for (long shardBytes : new long[]{1, 7, 64, 1000, 1 << 20}) {
+                    List<InputShards.Shard> shards = InputShards.split(ch, end, shardBytes);
+                    List<String> actual = new ArrayList<>();
+                    long pos = 0;
+                    int index = 0;
+                    ByteBuffer buf = ByteBuffer.allocate(16);
+                    for (InputShards.Shard s : shards) {
+                        assertEquals(pos, s.start());
+                        assertTrue(s.end() > s.start());
+                        List<String> lines = scan(ch, s.start(), s.end(), index);
+                        assertEquals(lines.size(), InputShards.countLines(ch, s, buf));
+                        actual.addAll(lines);
+                        index += lines.size();
+                        pos = s.end();
+                    }
+                    assertEquals(end, pos);
+                    assertEquals(expected, actual, "seed=" + seed + " shardBytes=" + shardBytes);
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("A trailing \\r is not a complete line yet; no terminator means nothing to shard")
+    void completeEnd_trailingCarriageReturn() throws Exception {
+        Path file = tmp.resolve("cr.txt");
+        Files.writeString(file, "1\r2\r");
+        try (var ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertEquals(2, InputShards.completeEnd(ch, ch.size()));
+        }
+        Files.writeString(file, "123");
+        try (var ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertEquals(0, InputShards.completeEnd(ch, ch.size()));
+            assertTrue(InputShards.split(ch, 0, 16).isEmpty());
+        }
+    }
+}
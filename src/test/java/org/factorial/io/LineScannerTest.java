@@ -0,0 +1,108 @@
+package org.factorial.io;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("LineScanner: same lines and values as RandomAccessFile.readLine + Integer.parseInt")
+class LineScannerTest {
+
+    @TempDir
+    Path tmp;
+
+    private static final String TRICKY = "1\r\n 22 \r333\n\n+4\n-0\n-7\n2147483647\n2147483648\n00012\n\t5\t\n"
+            + "x".repeat(300) + "\n\u00e9\r\r\n12 3\n+\n99";
+
+    private static List<String> viaRandomAccessFile(Path file) throws Exception {
+        List<String> out = new ArrayList<>();
+        try (var raf = new RandomAccessFile(file.toFile(), "r")) {
+            String line;
+            while ((line = raf.readLine()) != null) {
+                String s = line.trim();
+                try { out.add("v:" + Integer.parseInt(s)); }
+                catch (NumberFormatException e) { out.add("r:" + line); }
+            }
+        }
+        return out;
+    }
+
+    private static List<String> viaScanner(Path file, int bufferBytes) throws Exception {
+        List<String> out = new ArrayList<>();
+        try (var ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            var scanner = new LineScanner(ch, 0, 0, bufferBytes);
+            scanner.scan(new LineScanner.Sink() {
+                @Override public void parsed(int index, int value) { out.add("v:" + value); }
+                @Override public void raw(int index, String line) {
+                    try { out.add("v:" + Integer.parseInt(line.trim())); }
+                    catch (NumberFormatException e) { out.add("r:" + line); }
+                }
+            });
+            assertEquals(Files.size(file), scanner.position());
+            assertEquals(out.size(), scanner.nextIndex());
+        }
+        return out;
+    }
+
+    @Test
+    @DisplayName("Terminators, whitespace, signs, overflow, long lines and an unterminated tail")
+    void matchesRandomAccessFile() throws Exception {
+        Path file = tmp.resolve("tricky.txt");
+        Files.write(file, TRICKY.getBytes(StandardCharsets.ISO_8859_1));
+        List<String> expected = viaRandomAccessFile(file);
+        for (int bufferBytes : new int[]{64, 100, 1 << 20}) {
+            assertEquals(expected, viaScanner(file, bufferBytes), "buffer=" + bufferBytes);
+        }
+    }
+
+    @Test
+    @DisplayName("A second scan picks up appended lines with continuing indexes")
+    void resumesAfterAppend() throws Exception {
+        Path file = tmp.resolve("grow.txt");
+        Files.writeString(file, "1\n2\n");
+        List<Integer> indexes = new ArrayList<>();
+        LineScanner.Sink sink = new LineScanner.Sink() {
+            @Override public void parsed(int index, int value) { indexes.add(index); }
+            @Override public void raw(int index, String line) { indexes.add(index); }
+        };
+        try (var ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            var scanner = new LineScanner(ch, 0, 0, 64);
+            assertEquals(2, scanner.scan(sink));
+            assertEquals(0, scanner.scan(sink));
+            Files.writeString(file, "3\nx\n", StandardOpenOption.APPEND);
+            assertEquals(2, scanner.scan(sink));
+        }
+        assertEquals(List.of(0, 1, 2, 3), indexes);
+    }
+
+    @Test
+    @DisplayName("reset: scans only up to the limit, numbering from the given index")
+    void stopsAtLimit() throws Exception {
+        Path file = tmp.resolve("range.txt");
+        Files.writeString(file, "1\n22\n333\n4444\n");
+        List<String> lines = new ArrayList<>();
+        LineScanner.Sink sink = new LineScanner.Sink() {
+            @Override public void parsed(int index, int value) { lines.add(index + ":" + value); }
+            @Override public void raw(int index, String line) { lines.add(index + ":" + line); }
+        };
+        try (var ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            var scanner = new LineScanner(ch, 0, 0, 64);
+            scanner.reset(2, 10, 9);
+            assertEquals(2, scanner.scan(sink));
+            assertEquals(9, scanner.position());
+            assertEquals(12, scanner.nextIndex());
+            assertEquals(0, scanner.scan(sink));
+        }
+        assertEquals(List.of("10:22", "11:333"), lines);
+    }
+}
@@ -0,0 +1,123 @@
+package org.factorial.io;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MpscRingBufferTest {
+
+    @Test
+    @DisplayName("FIFO order; capacity rounded up to a power of two; offer fails when full")
+    void fifoAndBounded() {
+        var ring = new MpscRingBuffer<Integer>(3, MpscRingBuffer.WaitStrategy.PARK);
+        assertEquals(4, ring.capacity());
+        for (int i = 0; i < 4; i++) assertTrue(ring.offer(i));
+        assertFalse(ring.offer(4));
+        assertEquals(4, ring.size());
+        assertEquals(0, ring.remainingCapacity());
+        assertEquals(0, ring.peek());
+        assertEquals(0, ring.poll());
+        assertTrue(ring.offer(4));
+        List<Integer> rest = new ArrayList<>();
+        ring.forEach(rest::add);
+        assertEquals(List.of(1, 2, 3, 4), rest);
+        assertEquals(1, ring.poll());
+        assertEquals(2, ring.poll());
+        assertEquals(3, ring.poll());
+        assertEquals(4, ring.poll());
+        assertNull(ring.poll());
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    @DisplayName("drainTo moves up to the limit in order and frees the slots")
+    void drainToBatches() {
+        var ring = new MpscRingBuffer<Integer>(8, MpscRingBuffer.WaitStrategy.PARK);
+        for (int i = 0; i < 8; i++) ring.offer(i);
+        List<Integer> out = new ArrayList<>();
+        assertEquals(5, ring.drainTo(out, 5));
+        assertEquals(List.of(0, 1, 2, 3, 4), out);
+        assertEquals(3, ring.size());
+        for (int i = 8; i < 13; i++) assertTrue(ring.offer(i));
+        out.clear();
+        assertEquals(8, ring.drainTo(out));
+        assertEquals(List.of(5, 6, 7, 8, 9, 10, 11, 12), out);
+        assertEquals(0, ring.drainTo(out));
+    }
+
+    @Test
+    @DisplayName("poll with timeout returns null on an empty ring after roughly the timeout")
+    void pollTimesOut() throws InterruptedException {
+        var ring = new MpscRingBuffer<Integer>(4, MpscRingBuffer.WaitStrategy.PARK);
+        long t0 = System.nanoTime();
+        assertNull(ring.poll(50, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - t0 >= TimeUnit.MILLISECONDS.toNanos(45));
+    }
+
+    @ParameterizedTest(name = "wait={0}")
+    @ValueSource(strings = {"park", "yield", "spin"})
+    @DisplayName("Many producers through a small ring: every element delivered once, per-producer order kept")
+    void manyProducersOneConsumer(String wait) throws Exception {
+        var ring = new MpscRingBuffer<long[]>(64, MpscRingBuffer.WaitStrategy.of(wait));
+        int producers = 4;
+        int perProducer = 20_000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final long id = p;
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                    for (long i = 0; i < perProducer; i++) ring.put(new long[] {id, i});
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            t.start();
+            threads.add(t);
+        }
+        start.countDown();
+
+        long[] nextPerProducer = new long[producers];
+        List<long[]> batch = new ArrayList<>();
+        int received = 0;
+        while (received < producers * perProducer) {
+            long[] first = ring.poll(5, TimeUnit.SECONDS);
+            assertNotNull(first, "consumer starved after " + received);
+            batch.add(first);
+            ring.drainTo(batch, 32);
+            for (long[] e : batch) {
+                assertEquals(nextPerProducer[(int) e[0]]++, e[1]);
+                received++;
+            }
+            batch.clear();
+        }
+        for (Thread t : threads) t.join();
+        assertNull(ring.poll());
+    }
+
+    @Test
+    @DisplayName("take blocks until a producer publishes")
+    void takeWakesOnPut() throws Exception {
+        var ring = new MpscRingBuffer<String>(4, MpscRingBuffer.WaitStrategy.PARK);
+        Thread producer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+                ring.put("x");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        assertEquals("x", ring.take());
+        producer.join();
+    }
+}
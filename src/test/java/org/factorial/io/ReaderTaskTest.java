@@ -4,9 +4,12 @@ import org.factorial.compute.FactorialService;
 import org.factorial.compute.RateLimiter;
 import org.factorial.config.AppConfig;
 import org.factorial.model.Messages;
+import org.factorial.monitor.PipelineMetrics;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 
 import java.math.BigInteger;
 import java.nio.file.Files;
@@ -59,12 +62,12 @@ class ReaderTaskTest {
         AtomicInteger errors     = new AtomicInteger();
 
         var factorialService = new FactorialService(cfgWithPaths(in, out, err));
+        var metrics = new PipelineMetrics();
 
-        var task = new ReaderTask(
-                in, q, logger, limiter, workers,
-                linesRead, submitted, completed, errors,
-                slots, factorialService, 200 
-        );
+        var task = ReaderTask.builder(in, q, logger, limiter, ComputeLane.of("small", workers, slots), factorialService)
+                .counters(linesRead, submitted, completed, errors)
+                .followIdleMs(200).metrics(metrics)
+                .build();
 
         Thread t = new Thread(task, "reader-test-1");
         t.start();
@@ -103,13 +106,15 @@ class ReaderTaskTest {
         assertEquals(3, submitted.get());
         assertEquals(3, completed.get());
         assertEquals(3, errors.get());
+        assertEquals(3, metrics.stage(PipelineMetrics.Stage.READ_TO_SUBMIT).count());
 
         workers.shutdownNow();
     }
 
-    @Test
+    @ParameterizedTest(name = "watchFollow={0}")
+    @ValueSource(booleans = {true, false})
     @DisplayName("Follow mode: reads appended lines until idle timeout")
-    void followsAppendedLines_untilIdleTimeout() throws Exception {
+    void followsAppendedLines_untilIdleTimeout(boolean watchFollow) throws Exception {
         Path in = tmp.resolve("tail.txt");
         Path out = tmp.resolve("out.txt");
         Path err = tmp.resolve("err.txt");
@@ -131,11 +136,12 @@ class ReaderTaskTest {
         var factorialService = new FactorialService(cfgWithPaths(in, out, err));
 
         
-        var task = new ReaderTask(
-                in, q, logger, limiter, workers,
-                linesRead, submitted, completed, errors,
-                slots, factorialService, 1000
-        );
+        var task = ReaderTask.builder(in, q, logger, limiter, ComputeLane.of("small", workers, slots), factorialService)
+                .counters(linesRead, submitted, completed, errors)
+                .followIdleMs(1000)
+                .options(new ReaderTask.Options(false, true, watchFollow, 1, 0, Long.MAX_VALUE, Integer.MAX_VALUE, 1,
+                        ReaderTask.Options.DEFAULT_SHARD_BYTES))
+                .build();
 
         Thread t = new Thread(task, "reader-test-2");
         t.start();
@@ -191,11 +197,10 @@ class ReaderTaskTest {
 
         var factorialService = new FactorialService(cfgWithPaths(in, out, err));
 
-        var task = new ReaderTask(
-                in, q, logger, limiter, workers,
-                linesRead, submitted, completed, errors,
-                slots, factorialService, 200
-        );
+        var task = ReaderTask.builder(in, q, logger, limiter, ComputeLane.of("small", workers, slots), factorialService)
+                .counters(linesRead, submitted, completed, errors)
+                .followIdleMs(200)
+                .build();
 
         Thread t = new Thread(task, "reader-test-3");
         t.start();
@@ -214,4 +219,295 @@ class ReaderTaskTest {
 
         workers.shutdownNow();
     }
+
+    @Test
+    @DisplayName("Batch mode: valid lines are handed off in BATCH messages, invalid lines still SKIP")
+    void batchMode_groupsValidLines() throws Exception {
+        Path in = tmp.resolve("batch.txt");
+        Files.writeString(in, "3\n4\nx\n5\n6\n7\n");
+
+        BlockingQueue<Messages.Msg> q = new LinkedBlockingQueue<>();
+        ThreadPoolExecutor workers = fixedPool(2);
+        AtomicInteger submitted = new AtomicInteger();
+        AtomicInteger completed = new AtomicInteger();
+        var factorialService = new FactorialService(cfgWithPaths(in, tmp.resolve("o.txt"), tmp.resolve("e.txt")));
+
+        var task = ReaderTask.builder(in, q, ErrorLogger.inline(q), new RateLimiter(10_000),
+                        ComputeLane.of("small", workers, new Semaphore(2, true)), factorialService)
+                .counters(new AtomicInteger(), submitted, completed, new AtomicInteger())
+                .followIdleMs(100).options(new ReaderTask.Options(false, true, false, 2, 1_000, Long.MAX_VALUE, Integer.MAX_VALUE, 1,
+                        ReaderTask.Options.DEFAULT_SHARD_BYTES))
+                .build();
+        Thread t = new Thread(task, "reader-test-batch");
+        t.start();
+        t.join(3000);
+        workers.shutdown();
+        assertTrue(workers.awaitTermination(3, TimeUnit.SECONDS));
+
+        int batches = 0;
+        java.util.Map<Integer, String> results = new java.util.TreeMap<>();
+        for (Messages.Msg m : q) {
+            if (m.type() != Messages.Type.BATCH) continue;
+            batches++;
+            assertTrue(m.parts().size() <= 2);
+            for (Messages.Msg part : m.parts()) results.put(part.index(), part.value());
+        }
+        assertEquals(3, batches);
+        assertEquals(java.util.Map.of(0, "3", 1, "4", 3, "5", 4, "6", 5, "7"), results);
+        assertEquals(5, submitted.get());
+        assertEquals(5, completed.get());
+    }
+
+    @Test
+    @DisplayName("Compute pool: costly lines are computed on it, cheap ones stay on the worker")
+    void computePool_runsCostlyLines() throws Exception {
+        Path in = tmp.resolve("compute.txt");
+        Files.writeString(in, "5\n1000\n");
+
+        BlockingQueue<Messages.Msg> q = new LinkedBlockingQueue<>();
+        ThreadPoolExecutor workers = fixedPool(2);
+        ThreadPoolExecutor compute = fixedPool(1);
+        var factorialService = new FactorialService(cfgWithPaths(in, tmp.resolve("o.txt"), tmp.resolve("e.txt")));
+
+        var task = ReaderTask.builder(in, q, ErrorLogger.inline(q), new RateLimiter(10_000),
+                        ComputeLane.of("small", workers, new Semaphore(2, true)), factorialService)
+                .followIdleMs(100).compute(compute)
+                .build();
+        Thread t = new Thread(task, "reader-test-compute");
+        t.start();
+        t.join(3000);
+        workers.shutdown();
+        assertTrue(workers.awaitTermination(3, TimeUnit.SECONDS));
+
+        java.util.Map<String, BigInteger> results = new java.util.HashMap<>();
+        for (Messages.Msg m : q) if (m.type() == Messages.Type.RESULT) results.put(m.value(), m.factorial());
+        assertEquals(BigInteger.valueOf(120), results.get("5"));
+        BigInteger f1000 = BigInteger.ONE;
+        for (int i = 2; i <= 1000; i++) f1000 = f1000.multiply(BigInteger.valueOf(i));
+        assertEquals(f1000, results.get("1000"));
+        compute.shutdown();
+        assertTrue(compute.awaitTermination(3, TimeUnit.SECONDS));
+        assertEquals(1, compute.getCompletedTaskCount());
+    }
+
+    @ParameterizedTest(name = "batchMaxLines={0}")
+    @ValueSource(ints = {1, 4})
+    @DisplayName("Compute pool already shut down: every offloaded line is published as a failed SKIP")
+    void computePoolShutDown_publishesSkips(int batchMaxLines) throws Exception {
+        Path in = tmp.resolve("compute-closed.txt");
+        Files.writeString(in, "5\n1000\n2000\n7\n");
+
+        BlockingQueue<Messages.Msg> q = new LinkedBlockingQueue<>();
+        Path err = tmp.resolve("compute-closed-err-" + batchMaxLines + ".txt");
+        ThreadPoolExecutor workers = fixedPool(2);
+        ExecutorService compute = Executors.newSingleThreadExecutor();
+        compute.shutdown();
+        AtomicInteger submitted = new AtomicInteger();
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger errorsCount = new AtomicInteger();
+        var factorialService = new FactorialService(cfgWithPaths(in, tmp.resolve("o.txt"), tmp.resolve("e.txt")));
+
+        try (ErrorLogger logger = ErrorLogger.toFile(err)) {
+            ReaderTask.builder(in, q, logger, new RateLimiter(10_000),
+                            ComputeLane.of("small", workers, new Semaphore(2, true)), factorialService)
+                    .counters(new AtomicInteger(), submitted, completed, errorsCount)
+                    .options(new ReaderTask.Options(false, true, false, batchMaxLines, 1_000, Long.MAX_VALUE, Integer.MAX_VALUE,
+                            1, ReaderTask.Options.DEFAULT_SHARD_BYTES))
+                    .compute(compute)
+                    .build().run();
+            workers.shutdown();
+            assertTrue(workers.awaitTermination(3, TimeUnit.SECONDS));
+        }
+
+        assertEquals(submitted.get(), completed.get(), "every submitted line is accounted for");
+        java.util.Map<Integer, Messages.Msg> byIndex = new java.util.TreeMap<>();
+        for (Messages.Msg m : q) {
+            if (m.type() == Messages.Type.BATCH) for (Messages.Msg part : m.parts()) byIndex.put(part.index(), part);
+            else byIndex.put(m.index(), m);
+        }
+        assertEquals(List.of(0, 1, 2, 3), List.copyOf(byIndex.keySet()));
+        assertEquals(Messages.Type.SKIP, byIndex.get(1).type());
+        assertEquals(Messages.Type.SKIP, byIndex.get(2).type());
+        assertEquals(2, errorsCount.get());
+        String logged = Files.readString(err);
+        assertTrue(logged.contains("Factorial for line 2 failed"), logged);
+        assertTrue(logged.contains("Factorial for line 3 failed"), logged);
+    }
+
+    @Test
+    @DisplayName("Large lane: values from largeLaneMinN run there, the rest on the small lane")
+    void largeLane_receivesLargeValuesOnly() throws Exception {
+        Path in = tmp.resolve("lanes.txt");
+        Files.writeString(in, "3\n2000\n4\n3000\n");
+
+        BlockingQueue<Messages.Msg> q = new LinkedBlockingQueue<>();
+        ThreadPoolExecutor smallPool = fixedPool(2);
+        ThreadPoolExecutor largePool = fixedPool(1);
+        var small = ComputeLane.of("small", smallPool, new Semaphore(2, true));
+        var large = ComputeLane.of("large", largePool, new Semaphore(4, true));
+        var factorialService = new FactorialService(cfgWithPaths(in, tmp.resolve("o.txt"), tmp.resolve("e.txt")));
+
+        var task = ReaderTask.builder(in, q, ErrorLogger.inline(q), new RateLimiter(10_000), small, factorialService)
+                .followIdleMs(100).options(new ReaderTask.Options(false, true, false, 1, 0, Long.MAX_VALUE, 1_000, 1,
+                        ReaderTask.Options.DEFAULT_SHARD_BYTES))
+                .largeLane(large)
+                .build();
+        Thread t = new Thread(task, "reader-test-lanes");
+        t.start();
+        t.join(3000);
+        for (ThreadPoolExecutor pool : List.of(smallPool, largePool)) {
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(3, TimeUnit.SECONDS));
+        }
+
+        assertEquals(2, small.latency().count());
+        assertEquals(2, large.latency().count());
+        assertEquals(4, q.stream().filter(m -> m.type() == Messages.Type.RESULT).count());
+    }
+
+    @Test
+    @DisplayName("Sharded reading: every line keeps its global index; the unterminated tail is read after the shards")
+    void shardedReading_keepsGlobalIndexes() throws Exception {
+        Path in = tmp.resolve("sharded.txt");
+        StringBuilder sb = new StringBuilder();
+        java.util.Map<Integer, String> expected = new java.util.TreeMap<>();
+        java.util.Set<Integer> invalid = new java.util.TreeSet<>();
+        for (int i = 0; i < 3_000; i++) {
+            if (i % 97 == 5) { sb.append("bad").append(i % 2 == 0 ? "\r\n" : "\n"); invalid.add(i); continue; }
+            int v = i % 30;
+            sb.append(v).append(i % 3 == 0 ? "\r\n" : "\n");
+            expected.put(i, String.valueOf(v));
+        }
+        sb.append("7");
+        expected.put(3_000, "7");
+        Files.writeString(in, sb);
+
+        BlockingQueue<Messages.Msg> q = new LinkedBlockingQueue<>();
+        ThreadPoolExecutor workers = fixedPool(4);
+        AtomicInteger linesRead = new AtomicInteger();
+        AtomicInteger completed = new AtomicInteger();
+        var factorialService = new FactorialService(cfgWithPaths(in, tmp.resolve("o.txt"), tmp.resolve("e.txt")));
+
+        var task = ReaderTask.builder(in, q, ErrorLogger.inline(q), new RateLimiter(100_000),
+                        ComputeLane.of("small", workers, new Semaphore(8, true)), factorialService)
+                .counters(linesRead, new AtomicInteger(), completed, new AtomicInteger())
+                .followIdleMs(100)
+                .options(new ReaderTask.Options(false, true, false, 4, 1_000, Long.MAX_VALUE, Integer.MAX_VALUE, 4, 512))
+                .build();
+        Thread t = new Thread(task, "reader-test-sharded");
+        t.start();
+        t.join(10_000);
+        workers.shutdown();
+        assertTrue(workers.awaitTermination(5, TimeUnit.SECONDS));
+
+        java.util.Map<Integer, String> results = new java.util.TreeMap<>();
+        java.util.Set<Integer> skipped = new java.util.TreeSet<>();
+        for (Messages.Msg m : q) {
+            List<Messages.Msg> parts = m.type() == Messages.Type.BATCH ? m.parts() : List.of(m);
+            for (Messages.Msg part : parts) {
+                if (part.type() == Messages.Type.RESULT) assertNull(results.put(part.index(), part.value()));
+                if (part.type() == Messages.Type.SKIP) skipped.add(part.index());
+            }
+        }
+        assertEquals(expected, results);
+        assertEquals(invalid, skipped);
+        assertEquals(3_001, linesRead.get());
+        assertEquals(expected.size(), completed.get());
+    }
+
+    @Test
+    @DisplayName("Sharded reading: a separate errors file lists invalid lines in line order")
+    void shardedReading_logsErrorsInLineOrder() throws Exception {
+        Path in = tmp.resolve("sharded-errors.txt");
+        Path err = tmp.resolve("sharded-errors.log");
+        StringBuilder sb = new StringBuilder();
+        List<Integer> invalid = new java.util.ArrayList<>();
+        for (int i = 0; i < 3_000; i++) {
+            if (i % 7 == 3) { sb.append("bad").append('\n'); invalid.add(i + 1); continue; }
+            sb.append(i % 30).append('\n');
+        }
+        Files.writeString(in, sb);
+
+        BlockingQueue<Messages.Msg> q = new LinkedBlockingQueue<>();
+        ThreadPoolExecutor workers = fixedPool(4);
+        var factorialService = new FactorialService(cfgWithPaths(in, tmp.resolve("o.txt"), err));
+        try (ErrorLogger errorLogger = ErrorLogger.toFile(err)) {
+            var task = ReaderTask.builder(in, q, errorLogger, new RateLimiter(100_000),
+                            ComputeLane.of("small", workers, new Semaphore(8, true)), factorialService)
+                    .followIdleMs(100)
+                    .options(new ReaderTask.Options(false, true, false, 1, 0, Long.MAX_VALUE, Integer.MAX_VALUE, 4, 256))
+                    .build();
+            Thread t = new Thread(task, "reader-test-sharded-errors");
+            t.start();
+            t.join(10_000);
+        }
+        workers.shutdown();
+        assertTrue(workers.awaitTermination(5, TimeUnit.SECONDS));
+
+        List<Integer> logged = Files.readAllLines(err).stream()
+                .filter(l -> l.startsWith("Line "))
+                .map(l -> Integer.parseInt(l.substring(5, l.indexOf(':'))))
+                .toList();
+        assertEquals(invalid, logged);
+    }
+
+    @Test
+    @DisplayName("Dispatch pacing: the pacer starts tasks at the limiter's rate; results are complete")
+    void pacedDispatch_enforcesRate() throws Exception {
+        Path in = tmp.resolve("paced.txt");
+        Files.writeString(in, "1\n2\n3\n4\n5\n");
+
+        BlockingQueue<Messages.Msg> q = new LinkedBlockingQueue<>();
+        ThreadPoolExecutor workers = fixedPool(1);
+        var pacer = Executors.newSingleThreadScheduledExecutor();
+        AtomicInteger submitted = new AtomicInteger();
+        AtomicInteger completed = new AtomicInteger();
+        var factorialService = new FactorialService(cfgWithPaths(in, tmp.resolve("o.txt"), tmp.resolve("e.txt")));
+
+        long t0 = System.nanoTime();
+        var task = ReaderTask.builder(in, q, ErrorLogger.inline(q), new RateLimiter(20),
+                        ComputeLane.of("small", workers, new Semaphore(8, true)), factorialService)
+                .counters(new AtomicInteger(), submitted, completed, new AtomicInteger())
+                .pacer(pacer)
+                .build();
+        task.run();
+        long until = System.currentTimeMillis() + 3000;
+        while (completed.get() < 5 && System.currentTimeMillis() < until) Thread.sleep(10);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0);
+
+        assertEquals(5, submitted.get());
+        assertEquals(5, completed.get());
+        assertEquals(5, q.stream().filter(m -> m.type() == Messages.Type.RESULT).count());
+        assertTrue(elapsedMs >= 180, "4 spaced permits at 20/s need ~200ms, got " + elapsedMs + "ms");
+        pacer.shutdown();
+        workers.shutdown();
+    }
+
+    @Test
+    @DisplayName("Stage metrics: every valid line records read-to-submit and compute; each task records rate-limit and queue wait")
+    void recordsStageMetrics() throws Exception {
+        Path in = tmp.resolve("metrics.txt");
+        Files.writeString(in, "1\n2\nx\n3\n");
+
+        BlockingQueue<Messages.Msg> q = new LinkedBlockingQueue<>();
+        ThreadPoolExecutor workers = fixedPool(2);
+        var metrics = new PipelineMetrics();
+        var factorialService = new FactorialService(cfgWithPaths(in, tmp.resolve("o.txt"), tmp.resolve("e.txt")));
+
+        var task = ReaderTask.builder(in, q, ErrorLogger.inline(q), new RateLimiter(10_000),
+                        ComputeLane.of("small", workers, new Semaphore(2, true), metrics.stage(PipelineMetrics.Stage.QUEUE_WAIT)),
+                        factorialService)
+                .followIdleMs(100).metrics(metrics)
+                .build();
+        Thread t = new Thread(task, "reader-test-metrics");
+        t.start();
+        t.join(3000);
+        workers.shutdown();
+        assertTrue(workers.awaitTermination(3, TimeUnit.SECONDS));
+
+        assertEquals(3, metrics.stage(PipelineMetrics.Stage.READ_TO_SUBMIT).count());
+        assertEquals(3, metrics.stage(PipelineMetrics.Stage.COMPUTE).count());
+        assertEquals(3, metrics.stage(PipelineMetrics.Stage.RATE_LIMIT_WAIT).count());
+        assertEquals(3, metrics.stage(PipelineMetrics.Stage.QUEUE_WAIT).count());
+    }
 }
@@ -0,0 +1,62 @@
+package org.factorial.io;
+
+import org.factorial.model.Messages;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ReorderBuffer: ring indexing, growth and same-index precedence")
+class ReorderBufferTest {
+
+    @Test
+    @DisplayName("Releases messages strictly in index order, growing past the initial capacity")
+    void releasesInOrderAcrossGrowth() {
+        var buf = new ReorderBuffer(16, 0);
+        for (int i = 99; i >= 1; i--) buf.put(Messages.skip(i));
+        assertNull(buf.pollNext(), "index 0 has not arrived");
+        assertEquals(99, buf.size());
+
+        buf.put(Messages.skip(0));
+        for (int i = 0; i < 100; i++) assertEquals(i, buf.pollNext().index());
+        assertNull(buf.pollNext());
+        assertEquals(100, buf.nextIndex());
+    }
+
+    @Test
+    @DisplayName("For the same index the higher-priority message wins regardless of arrival order")
+    void higherPriorityWinsForSameIndex() {
+        var buf = new ReorderBuffer(16, 0);
+        buf.put(Messages.skip(1));
+        buf.put(Messages.raw(1, "bad"));
+        buf.put(Messages.raw(2, "worse"));
+        buf.put(Messages.skip(2));
+        buf.put(Messages.value(0, 3, BigInteger.valueOf(6)));
+
+        assertEquals(Messages.Type.RESULT, buf.pollNext().type());
+        assertEquals("bad", buf.pollNext().rawLine());
+        assertEquals("worse", buf.pollNext().rawLine());
+    }
+
+    @Test
+    @DisplayName("Messages for already written indexes are dropped")
+    void dropsStaleIndexes() {
+        var buf = new ReorderBuffer(16, 5);
+        buf.put(Messages.skip(4));
+        assertEquals(0, buf.size());
+    }
+
+    @Test
+    @DisplayName("Arrival time of each released message survives growth")
+    void tracksArrivalAcrossGrowth() {
+        var buf = new ReorderBuffer(16, 0);
+        for (int i = 40; i >= 1; i--) buf.put(Messages.skip(i), 1_000L + i);
+        buf.put(Messages.skip(0), 999L);
+        for (int i = 0; i <= 40; i++) {
+            assertEquals(i, buf.pollNext().index());
+            assertEquals(i == 0 ? 999L : 1_000L + i, buf.lastArrivalNanos());
+        }
+    }
+}
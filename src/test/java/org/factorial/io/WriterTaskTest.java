@@ -1,6 +1,7 @@
 package org.factorial.io;
 
 import org.factorial.model.Messages;
+import org.factorial.monitor.PipelineMetrics;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -8,6 +9,7 @@ import org.junit.jupiter.api.io.TempDir;
 import java.math.BigInteger;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
@@ -26,7 +28,7 @@ class WriterTaskTest {
         Path out = tmp.resolve("out1.txt");
         BlockingQueue<Messages.Msg> q = new ArrayBlockingQueue<>(10);
 
-        Thread t = new Thread(new WriterTask(out, q), "writer-test-1");
+        Thread t = new Thread(WriterTask.builder(out, q).build(), "writer-test-1");
         t.start();
 
         q.put(Messages.value(0, 3, new BigInteger("6")));
@@ -45,7 +47,7 @@ class WriterTaskTest {
         Path out = tmp.resolve("out2.txt");
         BlockingQueue<Messages.Msg> q = new ArrayBlockingQueue<>(10);
 
-        Thread t = new Thread(new WriterTask(out, q), "writer-test-2");
+        Thread t = new Thread(WriterTask.builder(out, q).build(), "writer-test-2");
         t.start();
 
         
@@ -67,7 +69,7 @@ class WriterTaskTest {
         Path out = tmp.resolve("out3.txt");
         BlockingQueue<Messages.Msg> q = new ArrayBlockingQueue<>(10);
 
-        Thread t = new Thread(new WriterTask(out, q), "writer-test-3");
+        Thread t = new Thread(WriterTask.builder(out, q).build(), "writer-test-3");
         t.start();
 
         q.put(Messages.raw(0, "not-a-number"));
@@ -86,7 +88,7 @@ class WriterTaskTest {
         Path out = tmp.resolve("out4.txt");
         BlockingQueue<Messages.Msg> q = new ArrayBlockingQueue<>(10);
 
-        Thread t = new Thread(new WriterTask(out, q), "writer-test-4");
+        Thread t = new Thread(WriterTask.builder(out, q).build(), "writer-test-4");
         t.start();
 
         q.put(new Messages.Msg(0, Messages.Type.ERROR_MSG, null, null, null, "explanation"));
@@ -105,7 +107,7 @@ class WriterTaskTest {
         Path out = tmp.resolve("out5.txt");
         BlockingQueue<Messages.Msg> q = new ArrayBlockingQueue<>(10);
 
-        Thread t = new Thread(new WriterTask(out, q), "writer-test-5");
+        Thread t = new Thread(WriterTask.builder(out, q).build(), "writer-test-5");
         t.start();
 
         q.put(Messages.skip(0));
@@ -123,7 +125,7 @@ class WriterTaskTest {
         Path out = tmp.resolve("out6.txt");
         BlockingQueue<Messages.Msg> q = new ArrayBlockingQueue<>(10);
 
-        Thread t = new Thread(new WriterTask(out, q), "writer-test-6");
+        Thread t = new Thread(WriterTask.builder(out, q).build(), "writer-test-6");
         t.start();
 
         
@@ -137,4 +139,81 @@ class WriterTaskTest {
 
         assertEquals(List.of("3 = 6", "4 = 24", "7 = 5040"), lines);
     }
+
+    @Test
+    @DisplayName("Worker-rendered RESULT bytes are copied verbatim, in index order")
+    void writesPreRenderedResults() throws Exception {
+        Path out = tmp.resolve("out7.txt");
+        BlockingQueue<Messages.Msg> q = new ArrayBlockingQueue<>(10);
+
+        Thread t = new Thread(WriterTask.builder(out, q).build(), "writer-test-7");
+        t.start();
+
+        q.put(Messages.rendered(1, 4, WriterTask.encodeResult(4, new BigInteger("24"))));
+        q.put(Messages.value(0, 3, new BigInteger("6")));
+        q.put(Messages.poison());
+
+        t.join(3000);
+        assertEquals(List.of("3 = 6", "4 = 24"), Files.readAllLines(out));
+    }
+
+    @Test
+    @DisplayName("Ingest-to-output latency is recorded once per flushed RESULT line")
+    void recordsIngestLatencyForFlushedResults() throws Exception {
+        Path out = tmp.resolve("out8.txt");
+        BlockingQueue<Messages.Msg> q = new ArrayBlockingQueue<>(10);
+        PipelineMetrics metrics = new PipelineMetrics();
+
+        Thread t = new Thread(WriterTask.builder(out, q).metrics(metrics).build(),
+                "writer-test-8");
+        t.start();
+
+        long ingest = System.nanoTime();
+        q.put(Messages.value(0, 3, new BigInteger("6"), ingest));
+        q.put(Messages.value(1, 4, new BigInteger("24"), ingest));
+        q.put(Messages.value(2, 5, new BigInteger("120")));
+        q.put(Messages.poison());
+
+        t.join(3000);
+        assertEquals(List.of("3 = 6", "4 = 24", "5 = 120"), Files.readAllLines(out));
+        assertEquals(2, metrics.lineLatency().count());
+        assertTrue(metrics.lineLatency().maxMillis() >= metrics.lineLatency().meanMillis());
+        assertEquals(3, metrics.stage(PipelineMetrics.Stage.WRITE).count());
+    }
+
+    @Test
+    @DisplayName("BATCH messages are unpacked and merged into index order with single messages")
+    void unpacksBatches() throws Exception {
+        Path out = tmp.resolve("out9.txt");
+        BlockingQueue<Messages.Msg> q = new ArrayBlockingQueue<>(10);
+
+        Thread t = new Thread(WriterTask.builder(out, q).build(), "writer-test-9");
+        t.start();
+
+        q.put(Messages.batch(List.of(Messages.value(1, 4, new BigInteger("24")), Messages.value(2, 5, new BigInteger("120")))));
+        q.put(Messages.raw(3, "x"));
+        q.put(Messages.value(0, 3, new BigInteger("6")));
+        q.put(Messages.poison());
+
+        t.join(3000);
+        assertEquals(List.of("3 = 6", "4 = 24", "5 = 120", "x"), Files.readAllLines(out));
+    }
+
+    @Test
+    @DisplayName("Drains a ring-buffer channel in batches, writing everything before POISON in order")
+    void drainsRingBufferChannel() throws Exception {
+        Path out = tmp.resolve("out10.txt");
+        BlockingQueue<Messages.Msg> q = new MpscRingBuffer<>(16, MpscRingBuffer.WaitStrategy.PARK);
+        Thread t = new Thread(WriterTask.builder(out, q).build(), "writer-test-10");
+        t.start();
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 299; i >= 0; i--) q.put(Messages.value(i, i, BigInteger.valueOf(i)));
+        for (int i = 0; i < 300; i++) expected.add(i + " = " + i);
+        q.put(Messages.poison());
+        q.put(Messages.raw(300, "after poison"));
+
+        t.join(3000);
+        assertEquals(expected, Files.readAllLines(out));
+    }
 }
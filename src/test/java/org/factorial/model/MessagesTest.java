@@ -89,4 +89,31 @@ class MessagesTest {
         assertTrue(s.toLowerCase().contains("raw") || s.contains(Messages.Type.RAW_ERROR.name()),
                 "toString() must contain RAW_ERROR type");
     }
+
+    @Test
+    @DisplayName("rendered(): RESULT message carrying pre-encoded bytes instead of a BigInteger")
+    void renderedFactory_setsEncodedBytes() {
+        byte[] line = "5 = 120\n".getBytes();
+        var m = Messages.rendered(2, 5, line);
+        assertAll(
+                () -> assertEquals(2, m.index()),
+                () -> assertEquals(Messages.Type.RESULT, m.type()),
+                () -> assertEquals("5", m.value()),
+                () -> assertNull(m.factorial()),
+                () -> assertSame(line, m.encoded())
+        );
+    }
+
+    @Test
+    @DisplayName("batch(): BATCH message indexed by its first part, carrying all parts")
+    void batchFactory_wrapsParts() {
+        var parts = java.util.List.of(Messages.value(4, 3, java.math.BigInteger.valueOf(6)), Messages.skip(5));
+        var m = Messages.batch(parts);
+        assertAll(
+                () -> assertEquals(4, m.index()),
+                () -> assertEquals(Messages.Type.BATCH, m.type()),
+                () -> assertEquals(parts, m.parts()),
+                () -> assertFalse(m.isPoison())
+        );
+    }
 }
@@ -0,0 +1,88 @@
+package org.factorial.monitor;
+
+import org.factorial.compute.RateLimiter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveRateControllerTest {
+
+    private static final AdaptiveRateController.Settings SETTINGS =
+            new AdaptiveRateController.Settings(10, 1_000, 50, 50, 100, 1_000, 20);
+
+    private static AdaptiveRateController controller(RateLimiter limiter, AtomicInteger backlog) {
+        return new AdaptiveRateController(limiter, backlog::get, () -> 0, SETTINGS);
+    }
+
+    @Test
+    @DisplayName("Uncongested while the limiter held tasks back: rate grows by the step, capped at max")
+    void increasesAdditively() {
+        var c = controller(new RateLimiter(100), new AtomicInteger());
+        assertEquals(150, c.next(100, 0, 0, true));
+        assertEquals(1_000, c.next(980, 100, 1_000, true));
+        assertEquals(1_000, c.next(980, 0, 5_000, true), "lag from tasks waiting for permits is not congestion");
+    }
+
+    @Test
+    @DisplayName("Limiter never waited (idle or compute-bound input): rate is held, not raised")
+    void holdsWhenNotLimited() {
+        var c = controller(new RateLimiter(100), new AtomicInteger());
+        assertEquals(100, c.next(100, 0, 0, false));
+        assertEquals(100, c.next(100, 100, 1_000, false));
+    }
+
+    @Test
+    @DisplayName("Backlog above the high mark, or lag while the limiter was not waiting: rate is cut, floored at min")
+    void decreasesMultiplicatively() {
+        var c = controller(new RateLimiter(100), new AtomicInteger());
+        assertEquals(400, c.next(800, 101, 0, true));
+        assertEquals(400, c.next(800, 0, 1_001, false));
+        assertEquals(10, c.next(15, 101, 0, false));
+    }
+
+    @Test
+    @DisplayName("lag.high=0 defaults to 3/4 of the lane slots")
+    void lagHighFromSlots() {
+        var cfg = org.factorial.config.AppConfig.fromProperties(new java.util.Properties());
+        assertEquals(750, AdaptiveRateController.Settings.from(cfg, 1_000).lagHigh());
+        var p = new java.util.Properties();
+        p.setProperty("rate.adaptive.lag.high", "40");
+        assertEquals(40, AdaptiveRateController.Settings.from(org.factorial.config.AppConfig.fromProperties(p), 1_000).lagHigh());
+    }
+
+    @Test
+    @DisplayName("Running controller lowers the rate while backlogged, holds it while idle, raises it under demand")
+    void adjustsLimiter() throws InterruptedException {
+        var limiter = new RateLimiter(800);
+        var backlog = new AtomicInteger(500);
+        Thread t = new Thread(controller(limiter, backlog));
+        t.start();
+        try {
+            long deadline = System.nanoTime() + 2_000_000_000L;
+            while (limiter.rate() > 10 && System.nanoTime() < deadline) Thread.sleep(5);
+            assertEquals(10, limiter.rate());
+            backlog.set(0);
+            Thread.sleep(150);
+            assertEquals(10, limiter.rate(), "no task waited on the limiter, so the rate must not creep up");
+
+            Thread demand = new Thread(() -> {
+                while (!Thread.currentThread().isInterrupted()) limiter.acquire();
+            });
+            demand.setDaemon(true);
+            demand.start();
+            try {
+                deadline = System.nanoTime() + 2_000_000_000L;
+                while (limiter.rate() < 200 && System.nanoTime() < deadline) Thread.sleep(5);
+                assertTrue(limiter.rate() >= 200, "rate should recover, got " + limiter.rate());
+            } finally {
+                demand.interrupt();
+            }
+        } finally {
+            t.interrupt();
+            t.join();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.factorial.monitor;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    @DisplayName("Empty histogram reports zeros")
+    void empty() {
+        var h = new LatencyHistogram();
+        assertEquals(0, h.count());
+        assertEquals(0, h.percentileNanos(0.99));
+        assertEquals(0.0, h.meanMillis());
+    }
+
+    @Test
+    @DisplayName("Percentiles of 1..100,000 ns are within 12.5% of the exact value")
+    void percentilesWithinBucketPrecision() {
+        var h = new LatencyHistogram();
+        for (long v = 1; v <= 100_000; v++) h.record(v);
+        assertEquals(100_000, h.count());
+        assertEquals(100_000, h.maxNanos());
+        for (double q : new double[] {0.5, 0.9, 0.99, 0.999}) {
+            long exact = (long) Math.ceil(q * 100_000);
+            long p = h.percentileNanos(q);
+            assertTrue(p >= exact && p <= exact * 1.125, "q=" + q + " exact " + exact + " got " + p);
+        }
+        assertEquals(100_000, h.percentileNanos(1.0));
+    }
+
+    @Test
+    @DisplayName("Bucket upper bounds cover every value and never overflow")
+    void bucketBounds() {
+        for (long v : new long[] {0, 1, 15, 16, 17, 31, 32, 1_000, 1L << 40, Long.MAX_VALUE}) {
+            int b = LatencyHistogram.bucket(v);
+            assertTrue(LatencyHistogram.upperBound(b) >= v, "value " + v);
+            if (b > 0) assertTrue(LatencyHistogram.upperBound(b - 1) < v, "value " + v);
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(LatencyHistogram.bucket(Long.MAX_VALUE)));
+    }
+
+    @Test
+    @DisplayName("Concurrent recording loses no samples; negative values are ignored")
+    void concurrentRecording() throws InterruptedException {
+        var h = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread th = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) h.record(i);
+                h.record(-1);
+            });
+            th.start();
+            threads.add(th);
+        }
+        for (Thread th : threads) th.join();
+        assertEquals(40_000, h.count());
+        assertEquals(4L * (9_999L * 10_000 / 2), h.totalNanos());
+    }
+}
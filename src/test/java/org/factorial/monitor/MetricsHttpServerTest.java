@@ -0,0 +1,33 @@
+package org.factorial.monitor;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsHttpServerTest {
+
+    @Test
+    @DisplayName("GET /metrics serves the current Prometheus text; other methods get 405")
+    void servesMetrics() throws Exception {
+        var metrics = new PipelineMetrics().counter("factorial_lines_read", "Input lines read.", () -> 7);
+        try (var server = MetricsHttpServer.start(metrics, "127.0.0.1", 0)) {
+            var client = HttpClient.newHttpClient();
+            URI uri = URI.create("http://127.0.0.1:" + server.port() + "/metrics");
+
+            var get = client.send(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, get.statusCode());
+            assertEquals(MetricsHttpServer.CONTENT_TYPE, get.headers().firstValue("Content-Type").orElse(""));
+            assertTrue(get.body().contains("factorial_lines_read_total 7\n"));
+
+            var post = client.send(HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.noBody()).build(),
+                    HttpResponse.BodyHandlers.discarding());
+            assertEquals(405, post.statusCode());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.factorial.monitor;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineMetricsTest {
+
+    @Test
+    @DisplayName("Prometheus text has HELP/TYPE per name, labelled gauges and a summary per stage")
+    void rendersPrometheusText() {
+        var read = new AtomicInteger(42);
+        var metrics = new PipelineMetrics()
+                .counter("factorial_lines_read", "Input lines read.", read::get)
+                .gauge("factorial_lane_queued", "lane=\"small\"", "Queued tasks.", () -> 3)
+                .gauge("factorial_lane_queued", "lane=\"large\"", "Queued tasks.", () -> 1);
+        metrics.record(PipelineMetrics.Stage.COMPUTE, 2_000_000);
+
+        String text = metrics.renderPrometheus();
+        assertTrue(text.contains("# TYPE factorial_lines_read_total counter\nfactorial_lines_read_total 42\n"));
+        assertTrue(text.contains("# TYPE factorial_lane_queued gauge\n"
+                + "factorial_lane_queued{lane=\"small\"} 3\nfactorial_lane_queued{lane=\"large\"} 1\n"));
+        assertEquals(1, text.split("# TYPE factorial_lane_queued", -1).length - 1);
+        assertTrue(text.contains("factorial_stage_seconds{stage=\"compute\",quantile=\"0.5\"} 0.002\n"));
+        assertTrue(text.contains("factorial_stage_seconds_count{stage=\"compute\"} 1\n"));
+        assertTrue(text.contains("factorial_stage_seconds_count{stage=\"write\"} 0\n"));
+        assertTrue(text.contains("factorial_line_latency_seconds_count 0\n"));
+
+        read.set(43);
+        assertTrue(metrics.renderPrometheus().contains("factorial_lines_read_total 43\n"));
+    }
+
+    @Test
+    @DisplayName("Each instance registers its own MXBean exposing counters and stage latencies, and removes only that one")
+    void exposesOverJmx() throws Exception {
+        var server = ManagementFactory.getPlatformMBeanServer();
+        var first = new PipelineMetrics().counter("x", "x", () -> 1);
+        var second = new PipelineMetrics().counter("x", "x", () -> 2);
+        second.record(PipelineMetrics.Stage.WRITE, 1_000);
+        ObjectName firstName = first.registerMBean("in.txt");
+        ObjectName secondName = second.registerMBean("in.txt");
+        try {
+            assertNotEquals(firstName, secondName);
+            assertEquals("in.txt", ObjectName.unquote(secondName.getKeyProperty("name")));
+            var counters = (TabularData) server.getAttribute(secondName, "Counters");
+            assertEquals(2L, counters.get(new Object[] {"x_total"}).get("value"));
+            var counts = (TabularData) server.getAttribute(secondName, "StageCounts");
+            assertEquals(1L, counts.get(new Object[] {"write"}).get("value"));
+
+            first.unregisterMBean();
+            assertFalse(server.isRegistered(firstName));
+            assertTrue(server.isRegistered(secondName), "closing one pipeline leaves the other's bean");
+        } finally {
+            first.unregisterMBean();
+            second.unregisterMBean();
+        }
+        assertFalse(server.isRegistered(secondName));
+    }
+}
@@ -104,4 +104,154 @@ class FactorialPipelineTest {
         String errText = Files.exists(err) ? Files.readString(err) : "";
         assertTrue(errText.isBlank(), "Errors file should be empty (or not created)");
     }
+
+    private static AppConfig dirConfig(Path in, Path out, Path err, String glob) {
+        var p = new java.util.Properties();
+        p.setProperty("input.dir", in.toString());
+        p.setProperty("input.dir.glob", glob);
+        p.setProperty("input.dir.parallel", "2");
+        p.setProperty("output.dir", out.toString());
+        p.setProperty("errors.dir", err.toString());
+        p.setProperty("rate.per.second", "100000");
+        p.setProperty("metrics.jmx", "false");
+        return AppConfig.fromProperties(p);
+    }
+
+    @Test
+    @DisplayName("Directory mode: each matching file gets its own ordered output and errors file")
+    void runDirectory_writesPerFileOutputs() throws Exception {
+        Path in = Files.createDirectory(tmp.resolve("inbox"));
+        Path out = tmp.resolve("out");
+        Path err = tmp.resolve("err");
+        Files.writeString(in.resolve("a.txt"), String.join(System.lineSeparator(), "2", "3", "x", "4"));
+        Files.writeString(in.resolve("b.txt"), String.join(System.lineSeparator(), "5", "-1", "6"));
+        StringBuilder big = new StringBuilder();
+        List<String> bigExpected = new java.util.ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            big.append(i % 25).append(System.lineSeparator());
+            bigExpected.add(i % 25 + " = " + factorial(i % 25));
+        }
+        Files.writeString(in.resolve("c.txt"), big);
+        Files.writeString(in.resolve("skip.dat"), "7");
+
+        new FactorialPipeline(4, dirConfig(in, out, err, "*.txt")).run();
+
+        assertEquals(List.of("2 = 2", "3 = 6", "4 = 24"), Files.readAllLines(out.resolve("a.txt")));
+        assertEquals(List.of("5 = 120", "6 = 720"), Files.readAllLines(out.resolve("b.txt")));
+        assertEquals(bigExpected, Files.readAllLines(out.resolve("c.txt")));
+        assertTrue(Files.readString(err.resolve("a.txt")).contains("Line 3"));
+        assertTrue(Files.readString(err.resolve("b.txt")).contains("Line 2"));
+        assertFalse(Files.exists(out.resolve("skip.dat")), "files not matching the glob are ignored");
+    }
+
+    @Test
+    @DisplayName("Directory mode: errors.dir equal to output.dir writes errors inline")
+    void runDirectory_inlineErrors() throws Exception {
+        Path in = Files.createDirectory(tmp.resolve("inbox"));
+        Path out = tmp.resolve("out");
+        Files.writeString(in.resolve("a.txt"), String.join(System.lineSeparator(), "4", "y", "6"));
+
+        new FactorialPipeline(2, dirConfig(in, out, out, "*")).run();
+
+        assertEquals(List.of("4 = 24", "y", "6 = 720"), Files.readAllLines(out.resolve("a.txt")));
+    }
+
+    @Test
+    @DisplayName("listInputs: regular files matching the glob, in name order")
+    void listInputs_sortedAndFiltered() throws Exception {
+        Path in = Files.createDirectory(tmp.resolve("inbox"));
+        Files.createDirectory(in.resolve("sub.txt"));
+        for (String name : List.of("c.txt", "a.txt", "b.log", "b.txt")) Files.writeString(in.resolve(name), "1");
+        List<String> names = FactorialPipeline.listInputs(in, "*.txt").stream().map(p -> p.getFileName().toString()).toList();
+        assertEquals(List.of("a.txt", "b.txt", "c.txt"), names);
+    }
+
+    @Test
+    @DisplayName("Resume: output is cut back to the checkpoint and the run continues from its line")
+    void run_resumesFromCheckpoint() throws Exception {
+        Path in = tmp.resolve("in.txt");
+        Path out = tmp.resolve("out.txt");
+        Path err = tmp.resolve("err.txt");
+        Path ckpt = tmp.resolve("run.ckpt");
+        Files.writeString(in, "1\n2\nx\n4\n5\n6\n");
+        // Lines 1-3 were written before the crash (marked so recomputation would show), line 4 only partly.
+        Files.writeString(out, "one\ntwo\n4 = 2");
+        // Line 5's entry was logged ahead of the writer; line 9's after the checkpoint was taken.
+        String kept = "Line 3: [x] -> not a valid integer (x)\n";
+        Files.writeString(err, kept + "Line 5: [ahead] -> logged early\nLine 9: junk");
+        var crc = new java.util.zip.CRC32();
+        crc.update("1\n2\nx\n".getBytes());
+        var props = new java.util.Properties();
+        props.setProperty("input", in.toAbsolutePath().normalize().toString());
+        props.setProperty("line.index", "3");
+        props.setProperty("input.offset", "6");
+        props.setProperty("output.offset", "8");
+        props.setProperty("errors.offset", String.valueOf((kept + "Line 5: [ahead] -> logged early\n").length()));
+        props.setProperty("errors", "1");
+        props.setProperty("input.key", String.valueOf(Files.readAttributes(in,
+                java.nio.file.attribute.BasicFileAttributes.class).fileKey()));
+        props.setProperty("input.crc", String.valueOf(crc.getValue()));
+        try (var os = Files.newOutputStream(ckpt)) { props.store(os, null); }
+
+        var p = new java.util.Properties();
+        p.setProperty("input.path", in.toString());
+        p.setProperty("output.path", out.toString());
+        p.setProperty("errors.path", err.toString());
+        p.setProperty("checkpoint.path", ckpt.toString());
+        p.setProperty("input.follow.idle.ms", "0");
+        p.setProperty("rate.per.second", "100000");
+        p.setProperty("metrics.jmx", "false");
+        var pipeline = new FactorialPipeline(2, AppConfig.fromProperties(p));
+        pipeline.run();
+
+        assertEquals(List.of("one", "two", "4 = 24", "5 = 120", "6 = 720"), Files.readAllLines(out));
+        assertEquals(List.of("Line 3: [x] -> not a valid integer (x)"), Files.readAllLines(err));
+        assertEquals(6L, pipeline.metrics().getCounters().get("factorial_lines_read_total"));
+        assertFalse(Files.exists(ckpt), "a finished run removes its checkpoint");
+    }
+
+    @Test
+    @DisplayName("Checkpointing: a saved checkpoint always points at a consistent output prefix")
+    void run_savesConsistentCheckpoints() throws Exception {
+        Path in = tmp.resolve("in.txt");
+        Path out = tmp.resolve("out.txt");
+        Path ckpt = tmp.resolve("run.ckpt");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2_000; i++) sb.append(i % 40).append('\n');
+        Files.writeString(in, sb);
+
+        var p = new java.util.Properties();
+        p.setProperty("input.path", in.toString());
+        p.setProperty("output.path", out.toString());
+        p.setProperty("errors.path", tmp.resolve("err.txt").toString());
+        p.setProperty("checkpoint.path", ckpt.toString());
+        p.setProperty("checkpoint.interval.ms", "100");
+        p.setProperty("input.follow.idle.ms", "3000");
+        p.setProperty("rate.per.second", "2000");
+        p.setProperty("metrics.jmx", "false");
+        Thread run = new Thread(() -> new FactorialPipeline(2, AppConfig.fromProperties(p)).run());
+        run.start();
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!Files.exists(ckpt) && System.currentTimeMillis() < deadline) Thread.sleep(20);
+        var saved = new java.util.Properties();
+        try (var is = Files.newInputStream(ckpt)) { saved.load(is); }
+        int line = Integer.parseInt(saved.getProperty("line.index"));
+        long outputOffset = Long.parseLong(saved.getProperty("output.offset"));
+        assertTrue(line > 0);
+        assertEquals(sb.substring(0, Integer.parseInt(saved.getProperty("input.offset"))).split("\n").length, line);
+        String prefix = new String(Files.readAllBytes(out), 0, (int) outputOffset);
+        List<String> written = prefix.lines().toList();
+        assertEquals(line, written.size());
+        assertEquals((line - 1) % 40 + " = " + factorial((line - 1) % 40), written.get(line - 1));
+
+        run.join(30_000);
+        assertFalse(Files.exists(ckpt));
+    }
+
+    private static java.math.BigInteger factorial(int n) {
+        java.math.BigInteger f = java.math.BigInteger.ONE;
+        for (int i = 2; i <= n; i++) f = f.multiply(java.math.BigInteger.valueOf(i));
+        return f;
+    }
 }